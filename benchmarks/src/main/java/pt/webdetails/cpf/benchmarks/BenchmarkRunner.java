@@ -0,0 +1,41 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the gc profiler, so allocation rates are reported along with ops/s.<br>
+ * Takes the usual JMH command line options, e.g. a benchmark name regex:
+ * <pre>java -jar benchmarks/target/benchmarks.jar MinificationBenchmark</pre>
+ */
+public class BenchmarkRunner {
+
+  public static void main( String[] args ) throws RunnerException, CommandLineOptionException {
+    CommandLineOptions commandLine = new CommandLineOptions( args );
+    OptionsBuilder options = new OptionsBuilder();
+    options.parent( commandLine );
+    if ( commandLine.getIncludes().isEmpty() ) {
+      options.include( BenchmarkRunner.class.getPackage().getName() + "\\..*Benchmark" );
+    }
+    if ( commandLine.getProfilers().isEmpty() ) {
+      options.addProfiler( GCProfiler.class );
+    }
+    new Runner( options.build() ).run();
+  }
+}
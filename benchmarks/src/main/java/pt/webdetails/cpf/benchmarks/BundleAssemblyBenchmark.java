@@ -0,0 +1,135 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.benchmarks;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.webdetails.cpf.PluginEnvironment;
+import pt.webdetails.cpf.packager.dependencies.BundleBuilder;
+import pt.webdetails.cpf.packager.dependencies.CssMinifiedDependency;
+import pt.webdetails.cpf.packager.dependencies.FileDependency;
+import pt.webdetails.cpf.packager.dependencies.JsMinifiedDependency;
+import pt.webdetails.cpf.packager.dependencies.SourceMapGenerator;
+import pt.webdetails.cpf.packager.origin.PathOrigin;
+import pt.webdetails.cpf.packager.origin.StaticSystemOrigin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assembling packaged files out of the whole corpus.<br>
+ * <code>cold</code> minifies every file on each build, <code>cached</code> reuses the minified fragments as happens
+ * when only some files changed.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class BundleAssemblyBenchmark {
+
+  private static final int THREADS = Math.max( 1, Runtime.getRuntime().availableProcessors() );
+
+  private File dir;
+  private CorpusEnvironment environment;
+  private List<FileDependency> jsFiles;
+  private List<FileDependency> cssFiles;
+  private BundleBuilder uncached;
+  private BundleBuilder cached;
+
+  @Setup
+  public void setUp() throws Exception {
+    dir = Corpus.copyToTempDir();
+    environment = CorpusEnvironment.init( dir );
+    jsFiles = getDependencies( "js", Corpus.JS_FILES );
+    cssFiles = getDependencies( "css", Corpus.CSS_FILES );
+    uncached = new BundleBuilder( THREADS, 0 ) { };
+    cached = new BundleBuilder( THREADS, 64 ) { };
+  }
+
+  @TearDown
+  public void tearDown() {
+    PluginEnvironment.init( null );
+    Corpus.delete( dir );
+  }
+
+  private List<FileDependency> getDependencies( String folder, String[] names ) {
+    PathOrigin origin = new StaticSystemOrigin( folder );
+    List<FileDependency> dependencies = new ArrayList<>();
+    for ( String name : names ) {
+      dependencies.add( new FileDependency( null, origin, name, environment.getUrlProvider() ) );
+    }
+    return dependencies;
+  }
+
+  @Benchmark
+  public byte[] jsCold() throws IOException {
+    return toByteArray( uncached.build( jsFiles, new JsMinifiedDependency.JsFragmentMinifier() ) );
+  }
+
+  @Benchmark
+  public byte[] jsCached() throws IOException {
+    return toByteArray( cached.build( jsFiles, new JsMinifiedDependency.JsFragmentMinifier() ) );
+  }
+
+  @Benchmark
+  public String jsCachedWithSourceMap() throws IOException {
+    SourceMapGenerator sourceMap = new SourceMapGenerator();
+    toByteArray( cached.build( jsFiles, new JsMinifiedDependency.JsFragmentMinifier(), sourceMap ) );
+    return sourceMap.toJson( "benchmark.js" );
+  }
+
+  @Benchmark
+  public byte[] cssCold() throws IOException {
+    return toByteArray( uncached.build( cssFiles, new CssMinifiedDependency.CssFragmentMinifier() ) );
+  }
+
+  @Benchmark
+  public byte[] cssCached() throws IOException {
+    return toByteArray( cached.build( cssFiles, new CssMinifiedDependency.CssFragmentMinifier() ) );
+  }
+
+  /**
+   * Everything done on the first request for a package: build, save, precompress and checksum.
+   */
+  @Benchmark
+  public String jsPackage() {
+    JsMinifiedDependency packaged = new JsMinifiedDependency( new StaticSystemOrigin( "packaged" ), "benchmark.js",
+      environment.getContentAccessFactory().getPluginSystemWriter( "packaged" ), jsFiles,
+      environment.getUrlProvider() );
+    return packaged.getDependencyInclude();
+  }
+
+  private static byte[] toByteArray( InputStream input ) throws IOException {
+    try {
+      return IOUtils.toByteArray( input );
+    } finally {
+      IOUtils.closeQuietly( input );
+    }
+  }
+}
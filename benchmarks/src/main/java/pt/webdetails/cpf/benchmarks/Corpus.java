@@ -0,0 +1,70 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+/**
+ * The checked-in files benchmarks run on, see <code>corpus/README.md</code>.
+ */
+public final class Corpus {
+
+  public static final String[] JS_FILES = { "jquery.js", "underscore.js" };
+  public static final String[] CSS_FILES = { "cvb.css", "cpk.css", "borderBox.css" };
+
+  private Corpus() {
+  }
+
+  /**
+   * @param path relative to the corpus folder, e.g. <code>js/jquery.js</code>
+   */
+  public static byte[] read( String path ) throws IOException {
+    InputStream in = Corpus.class.getResourceAsStream( "/corpus/" + path );
+    if ( in == null ) {
+      throw new IOException( "No corpus file " + path );
+    }
+    try {
+      return IOUtils.toByteArray( in );
+    } finally {
+      IOUtils.closeQuietly( in );
+    }
+  }
+
+  public static String readString( String path ) throws IOException {
+    return new String( read( path ), "UTF-8" );
+  }
+
+  /**
+   * Copies the whole corpus to a new temporary folder, keeping the <code>js</code> and <code>css</code> folders.
+   */
+  public static File copyToTempDir() throws IOException {
+    File dir = Files.createTempDirectory( "cpf-benchmarks" ).toFile();
+    for ( String name : JS_FILES ) {
+      FileUtils.writeByteArrayToFile( new File( dir, "js/" + name ), read( "js/" + name ) );
+    }
+    for ( String name : CSS_FILES ) {
+      FileUtils.writeByteArrayToFile( new File( dir, "css/" + name ), read( "css/" + name ) );
+    }
+    return dir;
+  }
+
+  public static void delete( File dir ) {
+    FileUtils.deleteQuietly( dir );
+  }
+}
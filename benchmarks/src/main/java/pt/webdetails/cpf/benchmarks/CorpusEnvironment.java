@@ -0,0 +1,169 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.benchmarks;
+
+import pt.webdetails.cpf.PluginEnvironment;
+import pt.webdetails.cpf.PluginSettings;
+import pt.webdetails.cpf.context.api.IUrlProvider;
+import pt.webdetails.cpf.plugincall.api.IPluginCall;
+import pt.webdetails.cpf.repository.api.IContentAccessFactory;
+import pt.webdetails.cpf.repository.api.IRWAccess;
+import pt.webdetails.cpf.repository.api.IReadAccess;
+import pt.webdetails.cpf.repository.api.IUserContentAccess;
+import pt.webdetails.cpf.repository.impl.FileBasedResourceAccess;
+
+import java.io.File;
+
+/**
+ * Plugin environment with every system and repository folder in a local folder, as packager code expects to find
+ * through {@link PluginEnvironment#env()}.
+ */
+public class CorpusEnvironment extends PluginEnvironment {
+
+  private static final String PLUGIN_ID = "cpf-benchmarks";
+
+  private final File root;
+  private final IContentAccessFactory contentAccessFactory;
+  private final IUrlProvider urlProvider;
+
+  public CorpusEnvironment( File root ) {
+    this.root = root;
+    this.contentAccessFactory = new ContentAccessFactory();
+    this.urlProvider = new UrlProvider();
+  }
+
+  /**
+   * @return an environment over the folder, already in use
+   */
+  public static CorpusEnvironment init( File root ) {
+    CorpusEnvironment environment = new CorpusEnvironment( root );
+    PluginEnvironment.init( environment );
+    return environment;
+  }
+
+  @Override
+  public IContentAccessFactory getContentAccessFactory() {
+    return contentAccessFactory;
+  }
+
+  @Override
+  public IUrlProvider getUrlProvider() {
+    return urlProvider;
+  }
+
+  @Override
+  public PluginSettings getPluginSettings() {
+    return null;
+  }
+
+  @Override
+  public String getPluginId() {
+    return PLUGIN_ID;
+  }
+
+  @Override
+  public IPluginCall getPluginCall( String pluginId, String service, String method ) {
+    return null;
+  }
+
+  private IRWAccess getAccess( String basePath ) {
+    final File base = basePath == null ? root : new File( root, basePath );
+    return new FileBasedResourceAccess() {
+      @Override
+      protected File getFile( String path ) {
+        return path == null ? base : new File( base, path );
+      }
+    };
+  }
+
+  private class ContentAccessFactory implements IContentAccessFactory {
+
+    @Override
+    public IUserContentAccess getUserContentAccess( String basePath ) {
+      return null;
+    }
+
+    @Override
+    public IReadAccess getPluginRepositoryReader( String basePath ) {
+      return getAccess( basePath );
+    }
+
+    @Override
+    public IRWAccess getPluginRepositoryWriter( String basePath ) {
+      return getAccess( basePath );
+    }
+
+    @Override
+    public IReadAccess getPluginSystemReader( String basePath ) {
+      return getAccess( basePath );
+    }
+
+    @Override
+    public IRWAccess getPluginSystemWriter( String basePath ) {
+      return getAccess( basePath );
+    }
+
+    @Override
+    public IReadAccess getOtherPluginSystemReader( String pluginId, String basePath ) {
+      return getAccess( basePath );
+    }
+
+    @Override
+    public IRWAccess getOtherPluginSystemWriter( String pluginId, String basePath ) {
+      return getAccess( basePath );
+    }
+  }
+
+  private static class UrlProvider implements IUrlProvider {
+
+    @Override
+    public String getPluginBaseUrl( String pluginId ) {
+      return "/pentaho/plugin/" + pluginId + "/api/";
+    }
+
+    @Override
+    public String getPluginBaseUrl() {
+      return getPluginBaseUrl( PLUGIN_ID );
+    }
+
+    @Override
+    public String getPluginStaticBaseUrl( String pluginId ) {
+      return "/pentaho/api/repos/" + pluginId + "/";
+    }
+
+    @Override
+    public String getPluginStaticBaseUrl() {
+      return getPluginStaticBaseUrl( PLUGIN_ID );
+    }
+
+    @Override
+    public String getRepositoryUrl( String fullPath ) {
+      return "/pentaho/api/repos/" + fullPath;
+    }
+
+    @Override
+    public String getWebappContextPath() {
+      return "/pentaho/";
+    }
+
+    @Override
+    public String getWebappContextRoot() {
+      return "http://localhost:8080/pentaho/";
+    }
+
+    @Override
+    public String getResourcesBasePath() {
+      return "/pentaho/api/repos/";
+    }
+  }
+}
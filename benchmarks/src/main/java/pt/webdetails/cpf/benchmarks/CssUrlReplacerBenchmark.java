@@ -0,0 +1,59 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.webdetails.cpf.packager.dependencies.CssUrlReplacer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewriting relative urls of css files to the location they are served from.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class CssUrlReplacerBenchmark {
+
+  private static final String LOCATION = "/pentaho/api/repos/cpf-benchmarks/css/";
+
+  @Param( { "cvb.css", "cpk.css", "borderBox.css" } )
+  public String name;
+
+  private String css;
+  private CssUrlReplacer replacer;
+
+  @Setup
+  public void setUp() throws Exception {
+    css = Corpus.readString( "css/" + name );
+    replacer = new CssUrlReplacer();
+  }
+
+  @Benchmark
+  public String processContents() {
+    return replacer.processContents( css, LOCATION );
+  }
+}
@@ -0,0 +1,126 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.webdetails.cpf.PluginEnvironment;
+import pt.webdetails.cpf.packager.DependenciesPackage;
+import pt.webdetails.cpf.packager.StringFilter;
+import pt.webdetails.cpf.packager.dependencies.Dependency;
+import pt.webdetails.cpf.packager.dependencies.FileDependency;
+import pt.webdetails.cpf.packager.origin.StaticSystemOrigin;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering the script tags of a package, as done on every dashboard render.<br>
+ * Packages are built during setup, only the include strings are measured.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class IncludeRenderingBenchmark {
+
+  private static final String GENERATED_DIR = "js/generated";
+
+  @Param( { "10", "100" } )
+  public int dependencies;
+
+  private File dir;
+  private DependenciesPackage jsPackage;
+  private DependenciesPackage.IDependencyInclusionFilter everyOther;
+  private StringFilter defaultFilter;
+  private String[] includes;
+
+  @Setup
+  public void setUp() throws Exception {
+    dir = Corpus.copyToTempDir();
+    CorpusEnvironment environment = CorpusEnvironment.init( dir );
+
+    // versions are checksums, so files need distinct contents; their size doesn't matter once versions are known
+    String js = Corpus.readString( "js/underscore.js" );
+    jsPackage = new DependenciesPackage( "benchmark", DependenciesPackage.PackageType.JS,
+      environment.getContentAccessFactory(), environment.getUrlProvider() );
+    for ( int i = 0; i < dependencies; i++ ) {
+      String name = "file" + i + ".js";
+      FileUtils.writeStringToFile( new File( dir, GENERATED_DIR + "/" + name ), "var file" + i + ";\n" + js, "UTF-8" );
+      jsPackage.registerFileDependency( name, null, new StaticSystemOrigin( GENERATED_DIR ), name );
+    }
+
+    everyOther = new DependenciesPackage.IDependencyInclusionFilter() {
+      @Override
+      public boolean include( Dependency dependency ) {
+        // file paths end with an even number
+        String path = dependency.toString();
+        return "02468".indexOf( path.charAt( path.length() - ".js".length() - 1 ) ) >= 0;
+      }
+    };
+    defaultFilter = jsPackage.getDefaultFilter();
+
+    // versions and packages are ready before measuring
+    jsPackage.getDependencies( false );
+    jsPackage.getDependencies( true );
+    jsPackage.getDependencies( true, everyOther );
+    includes = new String[ dependencies ];
+    for ( int i = 0; i < dependencies; i++ ) {
+      includes[ i ] = new FileDependency( null, new StaticSystemOrigin( GENERATED_DIR ), "file" + i + ".js",
+        environment.getUrlProvider() ).getUrlFilePath();
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    jsPackage.dispose();
+    PluginEnvironment.init( null );
+    Corpus.delete( dir );
+  }
+
+  @Benchmark
+  public String unpackaged() {
+    return jsPackage.getDependencies( false );
+  }
+
+  @Benchmark
+  public String packaged() {
+    return jsPackage.getDependencies( true );
+  }
+
+  @Benchmark
+  public String packagedFiltered() {
+    return jsPackage.getDependencies( true, everyOther );
+  }
+
+  @Benchmark
+  public void defaultStringFilter( Blackhole blackhole ) {
+    for ( String include : includes ) {
+      blackhole.consume( defaultFilter.filter( include, "http://localhost:8080/" ) );
+    }
+  }
+}
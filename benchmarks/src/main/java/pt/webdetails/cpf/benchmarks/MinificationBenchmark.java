@@ -0,0 +1,115 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.webdetails.cpf.packager.dependencies.CSSMin;
+import pt.webdetails.cpf.packager.dependencies.CssMinifier;
+import pt.webdetails.cpf.packager.dependencies.JSMin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minification throughput of single files.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class MinificationBenchmark {
+
+  @State( Scope.Benchmark )
+  public static class JsFile {
+
+    @Param( { "jquery.js", "underscore.js" } )
+    public String name;
+
+    byte[] contents;
+
+    @Setup
+    public void setUp() throws Exception {
+      contents = Corpus.read( "js/" + name );
+    }
+  }
+
+  @State( Scope.Benchmark )
+  public static class CssFile {
+
+    @Param( { "cvb.css", "cpk.css", "borderBox.css" } )
+    public String name;
+
+    byte[] contents;
+    String text;
+
+    @Setup
+    public void setUp() throws Exception {
+      contents = Corpus.read( "css/" + name );
+      text = new String( contents, "UTF-8" );
+    }
+  }
+
+  @Benchmark
+  public byte[] jsMin( JsFile file ) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream( file.contents.length );
+    new JSMin( file.contents, out ).jsmin();
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] jsMinStream( JsFile file ) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream( file.contents.length );
+    new JSMin( new ByteArrayInputStream( file.contents ), out ).jsmin();
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] jsMinWithSourceMap( JsFile file, final Blackhole blackhole ) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream( file.contents.length );
+    JSMin jsMin = new JSMin( file.contents, out );
+    jsMin.setMappingListener( new JSMin.MappingListener() {
+      @Override
+      public void mapping( int generatedLine, int generatedColumn, int sourceLine, int sourceColumn ) {
+        blackhole.consume( generatedColumn ^ sourceColumn );
+      }
+    } );
+    jsMin.jsmin();
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  public String cssMinifier( CssFile file ) {
+    return new CssMinifier().minify( file.text, "/pentaho/api/repos/cpf-benchmarks/css/" );
+  }
+
+  @SuppressWarnings( "deprecation" )
+  @Benchmark
+  public byte[] cssMinLegacy( CssFile file ) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream( file.contents.length );
+    CSSMin.formatFile( new ByteArrayInputStream( file.contents ), out );
+    return out.toByteArray();
+  }
+}
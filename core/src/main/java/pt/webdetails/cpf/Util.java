@@ -125,7 +125,7 @@ public abstract class Util {
     return RepositoryHelper.joinPaths( normalizedPaths );
   }
 
-  private static String bytesToHex( byte[] bytes ) {
+  public static String bytesToHex( byte[] bytes ) {
     StringBuffer hexString = new StringBuffer();
     for ( int i = 0; i < bytes.length; i++ ) {
       String byteValue = Integer.toHexString( 0xFF & bytes[ i ] );
@@ -12,8 +12,12 @@
 
 package pt.webdetails.cpf.packager;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.owasp.encoder.Encode;
+import pt.webdetails.cpf.Util;
 import pt.webdetails.cpf.context.api.IUrlProvider;
+import pt.webdetails.cpf.packager.dependencies.ChecksumService;
 import pt.webdetails.cpf.packager.dependencies.CssMinifiedDependency;
 import pt.webdetails.cpf.packager.dependencies.Dependency;
 import pt.webdetails.cpf.packager.dependencies.FileDependency;
@@ -25,9 +29,21 @@ import pt.webdetails.cpf.packager.origin.PathOrigin;
 import pt.webdetails.cpf.packager.origin.StaticSystemOrigin;
 import pt.webdetails.cpf.repository.api.IContentAccessFactory;
 import pt.webdetails.cpf.repository.api.IRWAccess;
+import pt.webdetails.cpf.repository.impl.FileChangeWatcher;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * A set of css|js files that can be packaged into a single file.<br> Encompasses former functionality of
@@ -35,6 +51,18 @@ import java.util.Map;
  */
 public class DependenciesPackage {
 
+  private static Log logger = LogFactory.getLog( DependenciesPackage.class );
+
+  // rebuilds after file changes, one at a time
+  private static final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor( new ThreadFactory() {
+    @Override
+    public Thread newThread( Runnable runnable ) {
+      Thread thread = new Thread( runnable, "cpf-package-rebuild" );
+      thread.setDaemon( true );
+      return thread;
+    }
+  } );
+
   public enum PackagingMode {
     MINIFY, CONCATENATE
   }
@@ -46,12 +74,30 @@ public class DependenciesPackage {
   private String name;
   private PackageType type;
 
-  protected Map<String, FileDependency> fileDependencies;
+  // registries are immutable snapshots replaced on each registration, so readers never wait on packagingLock
+  private volatile Map<String, FileDependency> fileDependencies;
 
-  protected PackagedFileDependency packagedDependency;
+  protected volatile PackagedFileDependency packagedDependency;
+  // guards registration and building packagedDependency
   protected Object packagingLock = new Object();
 
-  private Map<String, SnippetDependency> rawDependencies;
+  private static final int MAX_FILTERED_PACKAGES = 64;
+  // packages built for filtered requests, by filter key; files of evicted ones are kept for the pages including them,
+  // a package for the same selection is saved to the same paths
+  private final Map<String, PackagedFileDependency> filteredPackages =
+    new LinkedHashMap<String, PackagedFileDependency>( 16, 0.75f, true ) {
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<String, PackagedFileDependency> eldest ) {
+        return size() > MAX_FILTERED_PACKAGES;
+      }
+    };
+
+  // key for the package with all files in pendingRebuilds
+  private static final String UNFILTERED = "";
+  private final Set<String> pendingRebuilds = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+  private volatile Map<String, SnippetDependency> rawDependencies;
+  private volatile boolean disposed;
 
   protected IContentAccessFactory factory;
   protected IUrlProvider urlProvider;
@@ -63,8 +109,8 @@ public class DependenciesPackage {
    */
   public DependenciesPackage( String name, PackageType type, IContentAccessFactory factory, IUrlProvider urlProvider ) {
     this.name = name;
-    this.fileDependencies = new LinkedHashMap<>();
-    this.rawDependencies = new LinkedHashMap<>();
+    this.fileDependencies = Collections.emptyMap();
+    this.rawDependencies = Collections.emptyMap();
     this.type = type;
     this.factory = factory;
     this.urlProvider = urlProvider;
@@ -82,22 +128,150 @@ public class DependenciesPackage {
   public boolean registerFileDependency( String name, String version, PathOrigin origin, String path ) {
     final FileDependency dependency = new FileDependency( version, origin, path, this.urlProvider );
 
+    final FileDependency replaced;
     synchronized ( this.packagingLock ) {
-      if ( registerDependency( name, dependency, this.fileDependencies ) ) {
+      replaced = this.fileDependencies.get( name );
+      Map<String, FileDependency> registry = copyAndRegister( name, dependency, this.fileDependencies );
+      if ( registry != null ) {
+        this.fileDependencies = registry;
         //invalidate packaged if there
         this.packagedDependency = null;
+        synchronized ( filteredPackages ) {
+          filteredPackages.clear();
+        }
+      } else {
+        return false;
+      }
+    }
+    if ( replaced != null ) {
+      replaced.unwatch();
+    }
+    dependency.watch( new FileChangeWatcher.Listener() {
+      @Override
+      public void fileChanged( File file ) {
+        onFileChanged( dependency );
+      }
+    } );
+    if ( disposed ) {
+      // disposed while registering
+      dependency.unwatch();
+    }
+    // version will be needed for includes, get it ready while other files get registered
+    ChecksumService.getInstance().prefetch( dependency );
+
+    return true;
+  }
+
+  /**
+   * Stops watching the registered files, so that a package no longer in use can be collected. To be called when the
+   * package is discarded; its packaged files aren't rebuilt on changes after that.
+   */
+  public void dispose() {
+    Map<String, FileDependency> registry;
+    synchronized ( packagingLock ) {
+      disposed = true;
+      registry = fileDependencies;
+    }
+    for ( FileDependency dependency : registry.values() ) {
+      dependency.unwatch();
+    }
+  }
+
+  /**
+   * Packages made from a changed file are rebuilt in the background, the current ones are kept until then.
+   */
+  protected void onFileChanged( FileDependency dependency ) {
+    PackagedFileDependency packaged = packagedDependency;
+    if ( packaged != null && packaged.isBuiltFrom( dependency ) ) {
+      scheduleRebuild( UNFILTERED );
+    }
+    synchronized ( filteredPackages ) {
+      for ( Map.Entry<String, PackagedFileDependency> filtered : filteredPackages.entrySet() ) {
+        if ( filtered.getValue().isBuiltFrom( dependency ) ) {
+          scheduleRebuild( filtered.getKey() );
+        }
+      }
+    }
+  }
+
+  private void scheduleRebuild( final String filterKey ) {
+    if ( pendingRebuilds.add( filterKey ) ) {
+      rebuildExecutor.execute( new Runnable() {
+        @Override
+        public void run() {
+          // a change from now on needs another rebuild
+          pendingRebuilds.remove( filterKey );
+          try {
+            rebuild( filterKey );
+          } catch ( RuntimeException e ) {
+            logger.error( "Unable to rebuild package " + name, e );
+          }
+        }
+      } );
+    }
+  }
 
-        return true;
+  private void rebuild( String filterKey ) {
+    boolean isUnfiltered = UNFILTERED.equals( filterKey );
+    PackagedFileDependency current;
+    List<FileDependency> inputFiles;
+    synchronized ( packagingLock ) {
+      current = isUnfiltered ? packagedDependency : getFilteredPackage( filterKey );
+      if ( current == null ) {
+        // invalidated meanwhile, will be built on request
+        return;
       }
+      inputFiles = isUnfiltered ? new ArrayList<>( fileDependencies.values() ) : current.getInputFiles();
     }
 
-    return false;
+    PackagedFileDependency rebuilt = createPackage( isUnfiltered ? null : filterKey, inputFiles );
+    // builds and saves it now instead of on the next request
+    rebuilt.getVersion();
+
+    synchronized ( packagingLock ) {
+      if ( isUnfiltered ) {
+        if ( packagedDependency == current ) {
+          packagedDependency = rebuilt;
+        }
+      } else {
+        synchronized ( filteredPackages ) {
+          if ( filteredPackages.get( filterKey ) == current ) {
+            filteredPackages.put( filterKey, rebuilt );
+          }
+        }
+      }
+    }
   }
 
   public boolean registerRawDependency( String name, String version, String contents ) {
     final SnippetDependency snip = new SnippetDependency( version, contents );
 
-    return registerDependency( name, snip, this.rawDependencies );
+    synchronized ( packagingLock ) {
+      Map<String, SnippetDependency> registry = copyAndRegister( name, snip, this.rawDependencies );
+      if ( registry == null ) {
+        return false;
+      }
+      this.rawDependencies = registry;
+      return true;
+    }
+  }
+
+  /**
+   * @return the registered files, by name; an unmodifiable snapshot, files are added through
+   * {@link #registerFileDependency(String, String, PathOrigin, String)}
+   */
+  protected Map<String, FileDependency> getFileDependencies() {
+    return fileDependencies;
+  }
+
+  /**
+   * Registers in a copy of the registry, the given one is left as is for anyone iterating it.
+   *
+   * @return the updated registry, or <code>null</code> if the dependency wasn't registered
+   */
+  private <T extends Dependency> Map<String, T> copyAndRegister( String name, T dependency, Map<String, T> registry ) {
+    Map<String, T> copy = new LinkedHashMap<>( registry );
+    return registerDependency( name, dependency, copy ) ? Collections.unmodifiableMap( copy ) : null;
   }
 
   protected <T extends Dependency> boolean registerDependency( String name, T dependency, Map<String, T> registry ) {
@@ -191,68 +365,118 @@ public class DependenciesPackage {
   }
 
   protected String getPackagedDependency( StringFilter format, IDependencyInclusionFilter filter ) {
-    boolean isMap = type.equals( PackageType.MAP );
     if ( filter != null ) {
       // return minified dashboard component dependencies
+      Map<String, FileDependency> registry = fileDependencies;
       Map<String, FileDependency> customDependencies = new LinkedHashMap<>();
-      for ( FileDependency dep : fileDependencies.values() ) {
-        if ( filter.include( dep ) ) {
-          customDependencies.put( dep.getDependencyInclude(), dep );
+      for ( FileDependency dep : registry.values() ) {
+        if ( filter.include( dep ) && !customDependencies.containsKey( dep.getUrlFilePath() ) ) {
+          customDependencies.put( dep.getUrlFilePath(), dep );
         }
       }
 
-      String packagedPath = isMap ? name : name + "." + type.toString().toLowerCase();
-      String baseDir = type.toString().toLowerCase();
-
-      IRWAccess writer = factory.getPluginSystemWriter( baseDir );
-      PathOrigin origin = new StaticSystemOrigin( baseDir );
-
-      switch ( type ) {
-        case CSS:
-          return format.filter(
-            new CssMinifiedDependency( origin, packagedPath, writer, customDependencies.values(), urlProvider )
-              .getDependencyInclude() );
-        case JS:
-          return format.filter(
-            new JsMinifiedDependency( origin, packagedPath, writer, customDependencies.values(), urlProvider )
-              .getDependencyInclude() );
-        case MAP:
-          return format.filter( new MapDependency( origin, packagedPath, writer, customDependencies.values(),
-            urlProvider ).getDependencyInclude() );
-        default:
-          throw new IllegalStateException( getClass().getSimpleName() + " does not have a recognized type: " + type );
+      // same selection of files, same package
+      String filterKey = getFilterKey( customDependencies.keySet() );
+      PackagedFileDependency packaged = getFilteredPackage( filterKey );
+      if ( packaged == null ) {
+        packaged = createPackage( filterKey, new ArrayList<>( customDependencies.values() ) );
+        packaged = putFilteredPackage( filterKey, packaged, registry );
       }
+      return format.filter( packaged.getDependencyInclude() );
     } else {
       // set packagedDependency if null and/or return all dependencies minified
-      synchronized ( packagingLock ) {
-        if ( packagedDependency == null ) {
-          String packagedPath = isMap ? name : name + "." + type.toString().toLowerCase();
-          String baseDir = isMap ? "css" : type.toString().toLowerCase();
-
-          IRWAccess writer = factory.getPluginSystemWriter( baseDir );
-          PathOrigin origin = new StaticSystemOrigin( baseDir );
-
-          switch ( type ) {
-            case CSS:
-              packagedDependency =
-                new CssMinifiedDependency( origin, packagedPath, writer, fileDependencies.values(), urlProvider );
-              break;
-            case JS:
-              packagedDependency =
-                new JsMinifiedDependency( origin, packagedPath, writer, fileDependencies.values(), urlProvider );
-              break;
-            case MAP:
-              packagedDependency =
-                new MapDependency( origin, name, writer, fileDependencies.values(), urlProvider );
-              break;
-            default:
-              throw new IllegalStateException(
-                getClass().getSimpleName() + " does not have a recognized type: " + type );
+      PackagedFileDependency packaged = packagedDependency;
+      if ( packaged == null ) {
+        synchronized ( packagingLock ) {
+          if ( packagedDependency == null ) {
+            // snapshot, the package is built outside the lock
+            packagedDependency = createPackage( null, new ArrayList<>( fileDependencies.values() ) );
           }
+          packaged = packagedDependency;
         }
+      }
+
+      // building the package happens outside the lock so it doesn't block registering or other packages
+      return format.filter( packaged.getDependencyInclude() );
+    }
+  }
+
+  /**
+   * @param filterKey   see {@link #getFilterKey(Collection)}, <code>null</code> for the package with all files
+   * @param inputFiles  files to package, in order
+   */
+  private PackagedFileDependency createPackage( String filterKey, List<FileDependency> inputFiles ) {
+    boolean isMap = type.equals( PackageType.MAP );
+    String extension = type.toString().toLowerCase();
+    String packagedPath;
+    String baseDir;
+    if ( filterKey == null ) {
+      packagedPath = isMap ? name : name + "." + extension;
+      baseDir = isMap ? "css" : extension;
+    } else {
+      packagedPath = isMap ? name : name + "-" + filterKey + "." + extension;
+      baseDir = extension;
+    }
+    return createPackagedDependency( packagedPath, baseDir, inputFiles );
+  }
 
-        return format.filter( packagedDependency.getDependencyInclude() );
+  private PackagedFileDependency createPackagedDependency( String packagedPath, String baseDir,
+                                                           List<FileDependency> inputFiles ) {
+    IRWAccess writer = factory.getPluginSystemWriter( baseDir );
+    PathOrigin origin = new StaticSystemOrigin( baseDir );
+
+    switch ( type ) {
+      case CSS:
+        return new CssMinifiedDependency( origin, packagedPath, writer, inputFiles, urlProvider );
+      case JS:
+        return new JsMinifiedDependency( origin, packagedPath, writer, inputFiles, urlProvider );
+      case MAP:
+        return new MapDependency( origin, packagedPath, writer, inputFiles, urlProvider );
+      default:
+        throw new IllegalStateException( getClass().getSimpleName() + " does not have a recognized type: " + type );
+    }
+  }
+
+  /**
+   * @param includedPaths url paths of the files selected by a filter, in package order
+   * @return canonical key for that selection
+   */
+  private String getFilterKey( Collection<String> includedPaths ) {
+    StringBuilder key = new StringBuilder( type.toString() );
+    for ( String path : includedPaths ) {
+      key.append( '\n' ).append( path );
+    }
+    try {
+      return Util.getMd5Digest( key.toString() );
+    } catch ( IOException e ) {
+      // not expected from an in-memory stream
+      return Integer.toHexString( key.toString().hashCode() );
+    }
+  }
+
+  private PackagedFileDependency getFilteredPackage( String filterKey ) {
+    synchronized ( filteredPackages ) {
+      return filteredPackages.get( filterKey );
+    }
+  }
+
+  /**
+   * @param registry the files <code>packaged</code> was selected from
+   * @return the cached package for the key, which is <code>packaged</code> unless another thread got there first
+   */
+  private PackagedFileDependency putFilteredPackage( String filterKey, PackagedFileDependency packaged,
+                                                     Map<String, FileDependency> registry ) {
+    synchronized ( filteredPackages ) {
+      if ( registry != fileDependencies ) {
+        // files were registered meanwhile and the cache cleared, don't bring back an outdated package
+        return packaged;
+      }
+      PackagedFileDependency existing = filteredPackages.get( filterKey );
+      if ( existing != null ) {
+        return existing;
       }
+      filteredPackages.put( filterKey, packaged );
+      return packaged;
     }
   }
 
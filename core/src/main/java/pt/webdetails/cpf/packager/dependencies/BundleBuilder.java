@@ -0,0 +1,295 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.packager.dependencies;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds packaged files by minifying each input file in parallel and concatenating the results in order.<br>
+ * Minified fragments are cached by the MD5 of their contents, so changing one file only minifies that file again.
+ */
+public class BundleBuilder {
+
+  private static Log logger = LogFactory.getLog( BundleBuilder.class );
+
+  private static final int MAX_THREADS = Math.max( 1, Runtime.getRuntime().availableProcessors() );
+  private static final int QUEUE_SIZE = 256;
+  private static final long KEEP_ALIVE_SECONDS = 60;
+  private static final int MAX_CACHED_FRAGMENTS = 2048;
+
+  private static final BundleBuilder instance = new BundleBuilder( MAX_THREADS, MAX_CACHED_FRAGMENTS );
+
+  /**
+   * Turns the contents of a single file into its minified fragment.
+   */
+  public interface FragmentMinifier {
+
+    /**
+     * @param dependency the file being minified
+     * @return anything other than the file contents that changes the minified output, part of the fragment cache key
+     */
+    String getFragmentKey( FileDependency dependency );
+
+    byte[] minify( FileDependency dependency, byte[] contents ) throws Exception;
+  }
+
+  /**
+   * A minifier that can also tell where each part of its output came from, used for source maps.
+   */
+  public interface MappingFragmentMinifier extends FragmentMinifier {
+
+    /**
+     * Same as {@link #minify(FileDependency, byte[])}, reporting output positions relative to the fragment.
+     * Files that can't be minified yield no output, and any positions reported for them are ignored.
+     */
+    byte[] minify( FileDependency dependency, byte[] contents, JSMin.MappingListener mappings ) throws Exception;
+  }
+
+  private final ExecutorService executor;
+  private final Map<String, Fragment> fragments;
+
+  public static BundleBuilder getInstance() {
+    return instance;
+  }
+
+  protected BundleBuilder( int maxThreads, final int maxCachedFragments ) {
+    // when saturated the requesting thread minifies by itself instead of waiting on a full queue
+    ThreadPoolExecutor pool = new ThreadPoolExecutor( maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+      new ArrayBlockingQueue<Runnable>( QUEUE_SIZE ), new PackagerThreadFactory( "cpf-packager-" ),
+      new ThreadPoolExecutor.CallerRunsPolicy() );
+    pool.allowCoreThreadTimeOut( true );
+    this.executor = pool;
+    this.fragments = new LinkedHashMap<String, Fragment>( 16, 0.75f, true ) {
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<String, Fragment> eldest ) {
+        return size() > maxCachedFragments;
+      }
+    };
+  }
+
+  /**
+   * Minifies all input files in parallel and concatenates the fragments in iteration order.
+   * Files that fail to be read or minified are logged and skipped.
+   *
+   * @param inputFiles files to include in the package
+   * @param minifier   minification to apply to each file
+   * @return the packaged contents
+   */
+  public InputStream build( Iterable<FileDependency> inputFiles, FragmentMinifier minifier ) {
+    return build( inputFiles, minifier, null );
+  }
+
+  /**
+   * Same as {@link #build(Iterable, FragmentMinifier)}, also mapping the package to its input files.
+   *
+   * @param sourceMap receives the mappings of each file, if the minifier is a {@link MappingFragmentMinifier}
+   */
+  public InputStream build( Iterable<FileDependency> inputFiles, FragmentMinifier minifier,
+                            SourceMapGenerator sourceMap ) {
+    List<FileDependency> deps = new ArrayList<>();
+    List<Future<Fragment>> pending = new ArrayList<>();
+    for ( FileDependency dep : inputFiles ) {
+      deps.add( dep );
+      pending.add( executor.submit( new FragmentTask( dep, minifier ) ) );
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    // where the next fragment starts in the package
+    int line = 0;
+    int column = 0;
+    for ( int i = 0; i < pending.size(); i++ ) {
+      try {
+        Fragment fragment = pending.get( i ).get();
+        out.write( fragment.contents, 0, fragment.contents.length );
+        if ( sourceMap != null && fragment.mappings != null ) {
+          addMappings( sourceMap, sourceMap.addSource( deps.get( i ).getUrlFilePath() ), fragment.mappings, line,
+            column );
+        }
+        for ( byte b : fragment.contents ) {
+          if ( b == '\n' ) {
+            line++;
+            column = 0;
+          } else if ( ( b & 0xC0 ) != 0x80 ) {
+            column += ( b & 0xF0 ) == 0xF0 ? 2 : 1;
+          }
+        }
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        logger.error( String.format( "Interrupted while processing dependency %s. Skipping..", deps.get( i ) ) );
+      } catch ( ExecutionException e ) {
+        logger.error( String.format( "Error while processing dependency %s. Skipping..", deps.get( i ) ),
+          e.getCause() );
+      }
+    }
+    return new ByteArrayInputStream( out.toByteArray() );
+  }
+
+  /**
+   * Drops all cached fragments.
+   */
+  public void clearCache() {
+    synchronized ( fragments ) {
+      fragments.clear();
+    }
+  }
+
+  private static void addMappings( SourceMapGenerator sourceMap, int source, int[] mappings, int line, int column ) {
+    for ( int i = 0; i < mappings.length; i += 4 ) {
+      int generatedLine = mappings[ i ];
+      // only the first line is shared with the previous fragment
+      int generatedColumn = generatedLine == 0 ? column + mappings[ i + 1 ] : mappings[ i + 1 ];
+      sourceMap.addMapping( line + generatedLine, generatedColumn, source, mappings[ i + 2 ], mappings[ i + 3 ] );
+    }
+  }
+
+  protected Fragment getFragment( FileDependency dependency, FragmentMinifier minifier ) throws Exception {
+    byte[] contents = readContents( dependency );
+    String key = getCacheKey( contents, minifier.getFragmentKey( dependency ) );
+
+    Fragment fragment;
+    synchronized ( fragments ) {
+      fragment = fragments.get( key );
+    }
+    if ( fragment == null ) {
+      if ( minifier instanceof MappingFragmentMinifier ) {
+        MappingCollector mappings = new MappingCollector();
+        byte[] minified = ( (MappingFragmentMinifier) minifier ).minify( dependency, contents, mappings );
+        // a file that failed to minify is left out, along with whatever it reported before failing
+        fragment = new Fragment( minified, minified.length > 0 ? mappings.toArray() : null );
+      } else {
+        fragment = new Fragment( minifier.minify( dependency, contents ), null );
+      }
+      synchronized ( fragments ) {
+        fragments.put( key, fragment );
+      }
+    } else if ( logger.isDebugEnabled() ) {
+      logger.debug( String.format( "Reusing minified fragment for '%s'", dependency ) );
+    }
+    return fragment;
+  }
+
+  private static byte[] readContents( FileDependency dependency ) throws IOException {
+    InputStream input = dependency.getFileInputStream();
+    if ( input == null ) {
+      throw new IOException( "Unable to read " + dependency );
+    }
+    try {
+      return IOUtils.toByteArray( input );
+    } finally {
+      IOUtils.closeQuietly( input );
+    }
+  }
+
+  private static String getCacheKey( byte[] contents, String fragmentKey ) throws NoSuchAlgorithmException {
+    MessageDigest digest = MessageDigest.getInstance( "MD5" );
+    StringBuilder key = new StringBuilder( 64 );
+    for ( byte b : digest.digest( contents ) ) {
+      key.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+    }
+    if ( fragmentKey != null ) {
+      key.append( ':' ).append( fragmentKey );
+    }
+    return key.toString();
+  }
+
+  /**
+   * Minified contents of a file, with where its parts came from when known.
+   */
+  protected static class Fragment {
+    final byte[] contents;
+    // generated line, generated column, source line, source column
+    final int[] mappings;
+
+    Fragment( byte[] contents, int[] mappings ) {
+      this.contents = contents;
+      this.mappings = mappings;
+    }
+  }
+
+  private static class MappingCollector implements JSMin.MappingListener {
+
+    private int[] mappings = new int[ 256 ];
+    private int size;
+
+    @Override
+    public void mapping( int generatedLine, int generatedColumn, int sourceLine, int sourceColumn ) {
+      if ( size + 4 > mappings.length ) {
+        mappings = Arrays.copyOf( mappings, mappings.length * 2 );
+      }
+      mappings[ size++ ] = generatedLine;
+      mappings[ size++ ] = generatedColumn;
+      mappings[ size++ ] = sourceLine;
+      mappings[ size++ ] = sourceColumn;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf( mappings, size );
+    }
+  }
+
+  private class FragmentTask implements Callable<Fragment> {
+
+    private final FileDependency dependency;
+    private final FragmentMinifier minifier;
+
+    FragmentTask( FileDependency dependency, FragmentMinifier minifier ) {
+      this.dependency = dependency;
+      this.minifier = minifier;
+    }
+
+    @Override
+    public Fragment call() throws Exception {
+      return getFragment( dependency, minifier );
+    }
+  }
+
+  static class PackagerThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    PackagerThreadFactory( String prefix ) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread( Runnable runnable ) {
+      Thread thread = new Thread( runnable, prefix + count.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    }
+  }
+}
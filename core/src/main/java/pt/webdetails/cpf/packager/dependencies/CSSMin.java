@@ -38,7 +38,10 @@ import java.util.Arrays;
 import java.util.Vector;
 import java.util.regex.PatternSyntaxException;
 
-//TODO never used
+/**
+ * @deprecated never used, see {@link CssMinifier}
+ */
+@Deprecated
 public class CSSMin {
 
   protected static boolean bDebug = false;
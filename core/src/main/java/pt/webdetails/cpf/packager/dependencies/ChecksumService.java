@@ -0,0 +1,213 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.packager.dependencies;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import pt.webdetails.cpf.PluginEnvironment;
+import pt.webdetails.cpf.repository.api.IContentAccessFactory;
+import pt.webdetails.cpf.repository.api.IRWAccess;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the md5 checksums used as file dependency versions.<br>
+ * Checksums are kept by url path and last modified time, so a file is only read again when its last modified time
+ * changes. They are persisted in the plugin system folder to survive restarts, and can be computed in the background
+ * as soon as a dependency is registered.
+ */
+public class ChecksumService {
+
+  private static Log logger = LogFactory.getLog( ChecksumService.class );
+
+  static final String STORE_FILE = ".checksums.properties";
+
+  private static final int MAX_THREADS = Math.max( 1, Runtime.getRuntime().availableProcessors() );
+  private static final int QUEUE_SIZE = 1024;
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private static final ChecksumService instance = new ChecksumService( null );
+
+  private static class Checksum {
+    final long lastModified;
+    final String md5;
+
+    Checksum( long lastModified, String md5 ) {
+      this.lastModified = lastModified;
+      this.md5 = md5;
+    }
+  }
+
+  private final Map<String, Checksum> checksums = new ConcurrentHashMap<>();
+  private final ThreadPoolExecutor executor;
+  private final AtomicBoolean dirty = new AtomicBoolean();
+  private final Object storeLock = new Object();
+  private IRWAccess store;
+  private boolean loaded;
+
+  public static ChecksumService getInstance() {
+    return instance;
+  }
+
+  /**
+   * @param store where checksums are persisted, <code>null</code> to use the plugin system folder
+   */
+  protected ChecksumService( IRWAccess store ) {
+    this.store = store;
+    this.executor = new ThreadPoolExecutor( MAX_THREADS, MAX_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+      new ArrayBlockingQueue<Runnable>( QUEUE_SIZE ), new BundleBuilder.PackagerThreadFactory( "cpf-checksum-" ) );
+    this.executor.allowCoreThreadTimeOut( true );
+  }
+
+  /**
+   * Computes the dependency's checksum in the background, if not known already.
+   * Nothing is done if there's too much queued up, it will be computed when first needed.
+   */
+  public void prefetch( final FileDependency dependency ) {
+    try {
+      executor.execute( new Runnable() {
+        @Override
+        public void run() {
+          dependency.getVersion();
+        }
+      } );
+    } catch ( RejectedExecutionException e ) {
+      logger.debug( "Checksum queue full, skipping prefetch of " + dependency );
+    }
+  }
+
+  /**
+   * @param dependency   file to get the checksum for
+   * @param lastModified the file's current last modified time, 0 if unknown
+   * @return md5 checksum, <code>null</code> if it could not be computed
+   */
+  public String getChecksum( FileDependency dependency, long lastModified ) {
+    String key = lastModified > 0 ? dependency.getUrlFilePath() : null;
+    if ( key == null ) {
+      // nothing to tell if it changed
+      return dependency.computeCheckSum();
+    }
+
+    load();
+    Checksum known = checksums.get( key );
+    if ( known != null && known.lastModified == lastModified ) {
+      return known.md5;
+    }
+
+    String md5 = dependency.computeCheckSum();
+    if ( md5 != null ) {
+      checksums.put( key, new Checksum( lastModified, md5 ) );
+      scheduleSave();
+    }
+    return md5;
+  }
+
+  private void load() {
+    synchronized ( storeLock ) {
+      if ( loaded ) {
+        return;
+      }
+      loaded = true;
+      IRWAccess access = getStore();
+      if ( access == null || !access.fileExists( STORE_FILE ) ) {
+        return;
+      }
+      Properties stored = new Properties();
+      InputStream in = null;
+      try {
+        in = access.getFileInputStream( STORE_FILE );
+        stored.load( in );
+      } catch ( IOException e ) {
+        logger.error( "Unable to read " + STORE_FILE, e );
+        return;
+      } finally {
+        IOUtils.closeQuietly( in );
+      }
+      for ( String path : stored.stringPropertyNames() ) {
+        String value = stored.getProperty( path );
+        int sep = value.indexOf( ':' );
+        try {
+          long lastModified = Long.parseLong( value.substring( 0, sep ) );
+          checksums.put( path, new Checksum( lastModified, value.substring( sep + 1 ) ) );
+        } catch ( RuntimeException e ) {
+          logger.debug( "Ignoring invalid checksum entry for " + path );
+        }
+      }
+    }
+  }
+
+  private void scheduleSave() {
+    if ( dirty.compareAndSet( false, true ) ) {
+      try {
+        // runs after the queued checksums, so a batch of registrations is saved once
+        executor.execute( new Runnable() {
+          @Override
+          public void run() {
+            save();
+          }
+        } );
+      } catch ( RejectedExecutionException e ) {
+        // try again next time
+        dirty.set( false );
+      }
+    }
+  }
+
+  void save() {
+    dirty.set( false );
+    IRWAccess access = getStore();
+    if ( access == null ) {
+      return;
+    }
+    Properties stored = new Properties();
+    for ( Map.Entry<String, Checksum> entry : checksums.entrySet() ) {
+      stored.setProperty( entry.getKey(), entry.getValue().lastModified + ":" + entry.getValue().md5 );
+    }
+    try {
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+      stored.store( bytesOut, "file dependency checksums" );
+      synchronized ( storeLock ) {
+        if ( !access.saveFile( STORE_FILE, new ByteArrayInputStream( bytesOut.toByteArray() ) ) ) {
+          logger.warn( "Unable to save " + STORE_FILE );
+        }
+      }
+    } catch ( IOException e ) {
+      logger.error( "Unable to save " + STORE_FILE, e );
+    }
+  }
+
+  private IRWAccess getStore() {
+    synchronized ( storeLock ) {
+      if ( store == null ) {
+        PluginEnvironment environment = PluginEnvironment.env();
+        IContentAccessFactory factory = environment != null ? environment.getContentAccessFactory() : null;
+        if ( factory != null ) {
+          store = factory.getPluginSystemWriter( null );
+        }
+      }
+      return store;
+    }
+  }
+}
@@ -11,15 +11,16 @@ import pt.webdetails.cpf.Util;
 import pt.webdetails.cpf.context.api.IUrlProvider;
 import pt.webdetails.cpf.packager.origin.PathOrigin;
 import pt.webdetails.cpf.repository.api.IRWAccess;
+import pt.webdetails.cpf.utils.CharsetHelper;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.SequenceInputStream;
 import java.util.Enumeration;
 import java.util.Iterator;
 
 /**
- * CSS files aren't minified, just concatenated.<br> Relative resource URLs are updated to reflect new location.
+ * CSS files are minified with {@link CssMinifier} and concatenated.<br> Relative resource URLs are updated to reflect
+ * new location.
  */
 public class CssMinifiedDependency extends PackagedFileDependency {
 
@@ -32,9 +33,39 @@ public class CssMinifiedDependency extends PackagedFileDependency {
 
   @Override
   protected InputStream minifyPackage( Iterable<FileDependency> inputFiles ) {
-    return new SequenceInputStream( new CssReplacementStreamEnumeration( inputFiles.iterator() ) );
+    return getBundleBuilder().build( inputFiles, new CssFragmentMinifier() );
   }
 
+  public static class CssFragmentMinifier implements BundleBuilder.FragmentMinifier {
+
+    private CssMinifier minifier = new CssMinifier();
+
+    @Override
+    public String getFragmentKey( FileDependency dependency ) {
+      // relative urls are rewritten against the original location
+      return getOriginalUrlPath( dependency );
+    }
+
+    @Override
+    public byte[] minify( FileDependency dependency, byte[] contents ) throws IOException {
+      String css = Util.toString( contents );
+      StringBuilder minified = new StringBuilder( css.length() / 2 );
+      minifier.minify( css, getOriginalUrlPath( dependency ), minified );
+      // one line per file
+      minified.append( '\n' );
+      return minified.toString().getBytes( CharsetHelper.getEncoding() );
+    }
+
+    private static String getOriginalUrlPath( FileDependency dependency ) {
+      //strip filename from url
+      return FilenameUtils.getFullPath( dependency.getUrlFilePath() );
+    }
+  }
+
+  /**
+   * @deprecated packages are built by {@link BundleBuilder} with a {@link CssFragmentMinifier}
+   */
+  @Deprecated
   public static class CssReplacementStreamEnumeration implements Enumeration<InputStream> {
 
     private Iterator<FileDependency> deps;
@@ -0,0 +1,432 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.packager.dependencies;
+
+import pt.webdetails.cpf.repository.util.RepositoryHelper;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Minifies css in a single pass over its characters.<br>
+ * Removes comments (except <code>/*! ... *&#47;</code>), collapses whitespace, drops redundant semicolons, leading
+ * zeros and empty rules, and rewrites relative resource URLs the same way {@link CssUrlReplacer} does.
+ */
+public class CssMinifier {
+
+  private static final String ALPHA_IMAGE_LOADER = "progid:DXImageTransform.Microsoft.AlphaImageLoader(src='";
+
+  /**
+   * @param css      stylesheet contents
+   * @param location url path relative resource urls are rewritten against, <code>null</code> to keep them as they are
+   * @return minified stylesheet
+   */
+  public String minify( String css, String location ) {
+    StringBuilder out = new StringBuilder( css.length() );
+    minify( css, location, out );
+    return out.toString();
+  }
+
+  /**
+   * @see #minify(String, String)
+   */
+  public void minify( CharSequence css, String location, StringBuilder out ) {
+    new Pass( css, location, out ).run();
+  }
+
+  private static boolean isWhitespace( char c ) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+  }
+
+  private static boolean isWordChar( char c ) {
+    return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || ( c >= '0' && c <= '9' ) || c == '_';
+  }
+
+  private static boolean isDigit( char c ) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * at-rules whose block holds rules instead of declarations
+   */
+  private static boolean opensRuleList( String atRule ) {
+    return atRule.endsWith( "media" ) || atRule.endsWith( "supports" ) || atRule.endsWith( "document" )
+      || atRule.endsWith( "keyframes" ) || atRule.equals( "layer" ) || atRule.equals( "container" )
+      || atRule.equals( "scope" );
+  }
+
+  private static class Block {
+    final boolean declarations;
+    final int ruleStart;
+    final int contentStart;
+
+    Block( boolean declarations, int ruleStart, int contentStart ) {
+      this.declarations = declarations;
+      this.ruleStart = ruleStart;
+      this.contentStart = contentStart;
+    }
+  }
+
+  private static class Pass {
+
+    private final CharSequence in;
+    private final int length;
+    private final StringBuilder out;
+    private final String location;
+    private final String ieLocation;
+
+    private int pos;
+    private boolean pendingSpace;
+    private boolean pendingSemicolon;
+
+    private final Deque<Block> blocks = new ArrayDeque<>();
+    // where the current rule or at-rule begins in the output
+    private int statementStart;
+    private boolean inAtRulePrelude;
+    private boolean atRuleOpensRuleList;
+
+    Pass( CharSequence in, String location, StringBuilder out ) {
+      this.in = in;
+      this.length = in.length();
+      this.out = out;
+      this.location = location;
+      // AlphaImageLoader src is relative to the page using the css, expected one level above the css itself
+      this.ieLocation = location == null ? null : RepositoryHelper.appendPath( location, "../" );
+      this.statementStart = out.length();
+    }
+
+    void run() {
+      while ( pos < length ) {
+        char c = in.charAt( pos );
+        if ( c == '/' && peek( 1 ) == '*' ) {
+          comment();
+        } else if ( isWhitespace( c ) ) {
+          pendingSpace = true;
+          pos++;
+        } else if ( c == '"' || c == '\'' ) {
+          flushPending( c );
+          string( c );
+        } else if ( c == '\\' ) {
+          // escaped char, copied as is
+          flushPending( c );
+          out.append( c );
+          if ( ++pos < length ) {
+            out.append( in.charAt( pos++ ) );
+          }
+        } else if ( c == 'u' && isUrl() ) {
+          flushPending( c );
+          url();
+        } else if ( c == 'p' && ieLocation != null && startsWith( ALPHA_IMAGE_LOADER ) ) {
+          flushPending( c );
+          out.append( ALPHA_IMAGE_LOADER ).append( ieLocation );
+          pos += ALPHA_IMAGE_LOADER.length();
+          // rest of the quoted src
+          stringRemainder( '\'' );
+        } else {
+          switch ( c ) {
+            case '{':
+              openBlock();
+              break;
+            case '}':
+              closeBlock();
+              break;
+            case ';':
+              semicolon();
+              break;
+            case '@':
+              atRule();
+              break;
+            default:
+              other( c );
+          }
+        }
+      }
+      pendingSpace = false;
+      pendingSemicolon = false;
+    }
+
+    private char peek( int offset ) {
+      int idx = pos + offset;
+      return idx < length ? in.charAt( idx ) : 0;
+    }
+
+    private boolean startsWith( String token ) {
+      if ( pos + token.length() > length ) {
+        return false;
+      }
+      for ( int i = 0; i < token.length(); i++ ) {
+        if ( in.charAt( pos + i ) != token.charAt( i ) ) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private boolean inDeclarations() {
+      Block block = blocks.peek();
+      return block != null && block.declarations;
+    }
+
+    private boolean noSpaceAfter( char c ) {
+      switch ( c ) {
+        case '{':
+        case '}':
+        case ';':
+        case ',':
+        case '(':
+          return true;
+        case ':':
+          return inDeclarations() || inAtRulePrelude;
+        case '>':
+        case '+':
+        case '~':
+          return !inDeclarations();
+        default:
+          return false;
+      }
+    }
+
+    private boolean noSpaceBefore( char c ) {
+      switch ( c ) {
+        case '{':
+        case '}':
+        case ';':
+        case ',':
+        case ')':
+        case '!':
+          return true;
+        case ':':
+          return inDeclarations() || inAtRulePrelude;
+        case '>':
+        case '+':
+        case '~':
+          return !inDeclarations();
+        default:
+          return false;
+      }
+    }
+
+    /**
+     * Writes whatever was held back before the next significant char.
+     */
+    private void flushPending( char next ) {
+      if ( pendingSemicolon ) {
+        pendingSemicolon = false;
+        if ( next != '}' ) {
+          out.append( ';' );
+        }
+      }
+      if ( pendingSpace ) {
+        pendingSpace = false;
+        if ( out.length() > statementStart && !noSpaceAfter( out.charAt( out.length() - 1 ) )
+          && !noSpaceBefore( next ) ) {
+          out.append( ' ' );
+        }
+      }
+    }
+
+    private void comment() {
+      int end = indexOf( "*/", pos + 2 );
+      int next = end < 0 ? length : end + 2;
+      if ( peek( 2 ) == '!' ) {
+        boolean atStatementStart = out.length() == statementStart;
+        flushPending( '/' );
+        out.append( in, pos, next );
+        if ( atStatementStart && !inDeclarations() ) {
+          statementStart = out.length();
+        }
+      }
+      pos = next;
+    }
+
+    private int indexOf( String token, int from ) {
+      for ( int i = from; i + token.length() <= length; i++ ) {
+        if ( in.charAt( i ) == token.charAt( 0 ) && in.charAt( i + 1 ) == token.charAt( 1 ) ) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private void string( char quote ) {
+      out.append( quote );
+      pos++;
+      stringRemainder( quote );
+    }
+
+    /**
+     * Copies the remainder of a string, up to and including the closing quote.
+     */
+    private void stringRemainder( char quote ) {
+      while ( pos < length ) {
+        char c = in.charAt( pos++ );
+        out.append( c );
+        if ( c == '\\' && pos < length ) {
+          out.append( in.charAt( pos++ ) );
+        } else if ( c == quote ) {
+          return;
+        }
+      }
+    }
+
+    private boolean isUrl() {
+      if ( !startsWith( "url" ) || ( pos > 0 && isWordChar( in.charAt( pos - 1 ) ) ) ) {
+        return false;
+      }
+      int idx = pos + 3;
+      while ( idx < length && isWhitespace( in.charAt( idx ) ) ) {
+        idx++;
+      }
+      return idx < length && in.charAt( idx ) == '(';
+    }
+
+    private void url() {
+      int idx = pos + 3;
+      while ( in.charAt( idx ) != '(' ) {
+        idx++;
+      }
+      idx++;
+      while ( idx < length && isWhitespace( in.charAt( idx ) ) ) {
+        idx++;
+      }
+      char quote = idx < length && ( in.charAt( idx ) == '"' || in.charAt( idx ) == '\'' ) ? in.charAt( idx ) : 0;
+      int start = quote == 0 ? idx : idx + 1;
+      int end = start;
+      int close;
+      if ( quote != 0 ) {
+        // anything but the closing quote may be in a quoted url, parentheses included
+        while ( end < length && in.charAt( end ) != quote ) {
+          end += in.charAt( end ) == '\\' ? 2 : 1;
+        }
+        close = end + 1;
+      } else {
+        while ( end < length && in.charAt( end ) != ')' ) {
+          end++;
+        }
+        close = end;
+      }
+      while ( close < length && isWhitespace( in.charAt( close ) ) ) {
+        close++;
+      }
+      if ( close >= length || in.charAt( close ) != ')' ) {
+        // not something we understand, leave it alone
+        out.append( "url" );
+        pos += 3;
+        return;
+      }
+
+      String url = in.subSequence( start, end ).toString().trim();
+      out.append( "url(" );
+      if ( quote != 0 ) {
+        out.append( quote );
+      }
+      if ( location != null && isRelative( url ) ) {
+        out.append( location );
+      }
+      out.append( url );
+      if ( quote != 0 ) {
+        out.append( quote );
+      }
+      out.append( ')' );
+      pos = close + 1;
+    }
+
+    private boolean isRelative( String url ) {
+      if ( url.isEmpty() || url.startsWith( "/" ) ) {
+        return false;
+      }
+      // protocol
+      for ( int i = 0; i < url.length(); i++ ) {
+        char c = url.charAt( i );
+        if ( c == ':' ) {
+          return false;
+        } else if ( !isWordChar( c ) ) {
+          return true;
+        }
+      }
+      return true;
+    }
+
+    private void openBlock() {
+      pendingSpace = false;
+      flushPending( '{' );
+      boolean declarations = inDeclarations() || !( inAtRulePrelude && atRuleOpensRuleList );
+      out.append( '{' );
+      blocks.push( new Block( declarations, statementStart, out.length() ) );
+      inAtRulePrelude = false;
+      if ( !declarations ) {
+        statementStart = out.length();
+      }
+      pos++;
+    }
+
+    private void closeBlock() {
+      pendingSpace = false;
+      flushPending( '}' );
+      Block block = blocks.poll();
+      if ( block != null && block.declarations && out.length() == block.contentStart && !inDeclarations() ) {
+        // empty rule
+        out.setLength( block.ruleStart );
+      } else {
+        out.append( '}' );
+      }
+      statementStart = out.length();
+      inAtRulePrelude = false;
+      pos++;
+    }
+
+    private void semicolon() {
+      pendingSpace = false;
+      if ( inDeclarations() ) {
+        // only written if something other than the end of the block follows
+        char last = out.length() > 0 ? out.charAt( out.length() - 1 ) : 0;
+        pendingSemicolon = pendingSemicolon || last != '{';
+      } else {
+        flushPending( ';' );
+        out.append( ';' );
+        statementStart = out.length();
+        inAtRulePrelude = false;
+      }
+      pos++;
+    }
+
+    private void atRule() {
+      boolean atStatementStart = out.length() == statementStart;
+      flushPending( '@' );
+      int end = pos + 1;
+      while ( end < length && ( isWordChar( in.charAt( end ) ) || in.charAt( end ) == '-' ) ) {
+        end++;
+      }
+      if ( atStatementStart && !inDeclarations() ) {
+        inAtRulePrelude = true;
+        atRuleOpensRuleList = opensRuleList( in.subSequence( pos + 1, end ).toString().toLowerCase() );
+      }
+      out.append( in, pos, end );
+      pos = end;
+    }
+
+    private void other( char c ) {
+      flushPending( c );
+      if ( c == '0' && peek( 1 ) == '.' && isDigit( peek( 2 ) ) && inDeclarations() ) {
+        char last = out.length() > 0 ? out.charAt( out.length() - 1 ) : 0;
+        if ( last == ':' || last == ' ' || last == ',' || last == '(' || last == '/' ) {
+          // 0.5 -> .5
+          pos++;
+          return;
+        }
+      }
+      out.append( c );
+      pos++;
+    }
+  }
+}
@@ -20,7 +20,11 @@ import pt.webdetails.cpf.Util;
 import pt.webdetails.cpf.context.api.IUrlProvider;
 import pt.webdetails.cpf.packager.origin.PathOrigin;
 import pt.webdetails.cpf.repository.api.IContentAccessFactory;
+import pt.webdetails.cpf.repository.api.IReadAccess;
+import pt.webdetails.cpf.repository.impl.FileBasedResourceAccess;
+import pt.webdetails.cpf.repository.impl.FileChangeWatcher;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -34,7 +38,12 @@ public class FileDependency extends Dependency {
   protected String filePath;
   protected PathOrigin origin;
   protected IUrlProvider urlProvider;
-  private String hash;
+  private volatile Checksum checksum;
+  // while watched the checksum is only dropped on change notifications, no need to check timestamps
+  private volatile boolean watched;
+  private volatile int changeCount;
+  private FileBasedResourceAccess watchedReader;
+  private FileChangeWatcher.Listener changeListener;
 
   // TODO: why not just a timestamp?
   // use checksums for versions, otherwise use timestamps
@@ -44,25 +53,97 @@ public class FileDependency extends Dependency {
     super();
 
     this.filePath = path;
-    this.hash = null;
     this.origin = origin;
     this.urlProvider = urlProvider;
   }
 
+  /**
+   * @return md5 of the file contents, only read again if the file's last modified time changed
+   * @see ChecksumService
+   */
   protected String getCheckSum() {
-    if ( hash == null ) {
-      InputStream in = null;
-      try {
-        in = getFileInputStream();
-        hash = Util.getMd5Digest( in );
-      } catch ( Exception e ) {
-        logger.error( "Could not compute md5 checksum.", e );
-      } finally {
-        IOUtils.closeQuietly( in );
+    Checksum current = checksum;
+    if ( watched && current != null ) {
+      return current.md5;
+    }
+    int changesBefore = changeCount;
+    long lastModified = getLastModified();
+    if ( current != null && ( current.lastModified == lastModified || lastModified <= 0 ) ) {
+      return current.md5;
+    }
+    String md5 = ChecksumService.getInstance().getChecksum( this, lastModified );
+    if ( md5 != null && changesBefore == changeCount ) {
+      checksum = new Checksum( lastModified, md5 );
+    }
+    return md5;
+  }
+
+  /**
+   * Gets the listener notified when this file changes, if its origin is file based.<br>
+   * While watched the version is only recomputed after a change.
+   *
+   * @return <code>false</code> if changes to this file can't be watched
+   */
+  public synchronized boolean watch( final FileChangeWatcher.Listener listener ) {
+    unwatch();
+    final IContentAccessFactory contentFactory = getContentFactory();
+    IReadAccess reader = contentFactory != null && origin != null ? origin.getReader( contentFactory ) : null;
+    if ( !( reader instanceof FileBasedResourceAccess ) ) {
+      return false;
+    }
+    FileChangeWatcher.Listener onChange = new FileChangeWatcher.Listener() {
+      @Override
+      public void fileChanged( File file ) {
+        changeCount++;
+        checksum = null;
+        listener.fileChanged( file );
       }
+    };
+    if ( ( (FileBasedResourceAccess) reader ).watchFile( filePath, onChange ) ) {
+      watchedReader = (FileBasedResourceAccess) reader;
+      changeListener = onChange;
+      watched = true;
     }
+    return watched;
+  }
 
-    return hash;
+  /**
+   * Stops watching for changes, see {@link #watch(FileChangeWatcher.Listener)}.
+   */
+  public synchronized void unwatch() {
+    if ( watched ) {
+      watched = false;
+      watchedReader.unwatchFile( filePath, changeListener );
+      watchedReader = null;
+      changeListener = null;
+    }
+  }
+
+  /**
+   * Reads the whole file to get its md5.
+   *
+   * @return md5 checksum, <code>null</code> if it could not be read
+   */
+  protected String computeCheckSum() {
+    InputStream in = null;
+    try {
+      in = getFileInputStream();
+      return Util.getMd5Digest( in );
+    } catch ( Exception e ) {
+      logger.error( "Could not compute md5 checksum.", e );
+      return null;
+    } finally {
+      IOUtils.closeQuietly( in );
+    }
+  }
+
+  private long getLastModified() {
+    try {
+      return getTimeStamp();
+    } catch ( Exception e ) {
+      // unknown, checksum is kept as is
+      return 0;
+    }
   }
 
   public String getVersion() {
@@ -118,4 +199,14 @@ public class FileDependency extends Dependency {
   public String toString() {
     return this.filePath;
   }
+
+  private static class Checksum {
+    final long lastModified;
+    final String md5;
+
+    Checksum( long lastModified, String md5 ) {
+      this.lastModified = lastModified;
+      this.md5 = md5;
+    }
+  }
 }
@@ -44,32 +44,179 @@ package pt.webdetails.cpf.packager.dependencies;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PushbackInputStream;
 import java.text.ParseException;
 
 /**
- * Minifies javascript code by removing comments and compressing whitespace.
+ * Minifies javascript code by removing comments and compressing whitespace.<br>
+ * Input is read and output written in blocks through internal byte buffers, lookahead is an index into the input
+ * buffer.<br>
+ * Where each part of the output came from can be followed with a {@link MappingListener}.
  *
  * @see #jsmin()
  */
 public class JSMin {
   private static final int EOF = -1;
+  private static final int BUFFER_SIZE = 8192;
 
-  private PushbackInputStream in;
+  /**
+   * Receives output positions along with the input positions they came from, in output order.<br>
+   * Lines and columns are 0-based, columns count UTF-16 code units as source maps do.
+   */
+  public interface MappingListener {
+    void mapping( int generatedLine, int generatedColumn, int sourceLine, int sourceColumn );
+  }
+
+  private InputStream in;
   private OutputStream out;
 
+  private byte[] inBuf;
+  private int inPos;
+  private int inLength;
+
+  private byte[] outBuf;
+  private int outPos;
+
   // not just any A
   private int theA;
   private int theB;
   // input position, 0-based, for parse exceptions
   private int pos;
 
+  // source mapping, only tracked with a listener; positions are packed as line << 32 | column
+  private MappingListener mappings;
+  private int inLine;
+  private int inColumn;
+  private boolean afterCr;
+  private long lastPosition;
+  private long positionA;
+  private long positionB;
+  private int outLine;
+  private int outColumn;
+  // position right after the last mapped output char, in the input
+  private long nextPosition = -1;
+
   public JSMin( InputStream in, OutputStream out ) {
-    this.in = new PushbackInputStream( in );
+    this.in = in;
+    this.inBuf = new byte[ BUFFER_SIZE ];
+    this.inPos = 0;
+    this.inLength = 0;
     this.out = out;
+    this.outBuf = new byte[ BUFFER_SIZE ];
     this.pos = 0;
   }
 
+  /**
+   * Minifies contents that are already in memory, without copying them.
+   */
+  public JSMin( byte[] contents, OutputStream out ) {
+    this.in = null;
+    this.inBuf = contents;
+    this.inPos = 0;
+    this.inLength = contents.length;
+    this.out = out;
+    this.outBuf = new byte[ Math.max( 16, Math.min( BUFFER_SIZE, contents.length ) ) ];
+    this.pos = 0;
+  }
+
+  /**
+   * @param mappings notified of where output comes from while minifying, <code>null</code> for none
+   */
+  public void setMappingListener( MappingListener mappings ) {
+    this.mappings = mappings;
+  }
+
+  /**
+   * @return true if more input is available in the buffer
+   */
+  private boolean fill() throws IOException {
+    if ( inPos < inLength ) {
+      return true;
+    }
+    if ( in == null ) {
+      return false;
+    }
+    int read;
+    do {
+      read = in.read( inBuf, 0, inBuf.length );
+    } while ( read == 0 );
+    if ( read < 0 ) {
+      in = null;
+      return false;
+    }
+    inPos = 0;
+    inLength = read;
+    return true;
+  }
+
+  private void write( int c, long position ) throws IOException {
+    if ( outPos == outBuf.length ) {
+      flushOutput();
+    }
+    outBuf[ outPos++ ] = (byte) c;
+    if ( mappings != null ) {
+      trackOutput( c, position );
+    }
+  }
+
+  /**
+   * Maps output chars that don't follow the previous one in the input, i.e. something was removed in between.
+   */
+  private void trackOutput( int c, long position ) {
+    if ( c == '\n' ) {
+      outLine++;
+      outColumn = 0;
+      nextPosition = -1;
+    } else if ( !isContinuationByte( c ) ) {
+      if ( position != nextPosition && c != ' ' ) {
+        mappings.mapping( outLine, outColumn, (int) ( position >>> 32 ), (int) position );
+      }
+      int width = getColumnWidth( c );
+      outColumn += width;
+      nextPosition = position + width;
+    }
+  }
+
+  /**
+   * Keeps track of the line and column of the char just read.
+   */
+  private void trackInput( int c ) {
+    if ( isContinuationByte( c ) ) {
+      // part of the previous char
+      return;
+    }
+    lastPosition = ( (long) inLine << 32 ) | inColumn;
+    if ( c == '\n' ) {
+      if ( !afterCr ) {
+        inLine++;
+      }
+      inColumn = 0;
+    } else if ( c == '\r' ) {
+      inLine++;
+      inColumn = 0;
+    } else {
+      inColumn += getColumnWidth( c );
+    }
+    afterCr = c == '\r';
+  }
+
+  private static boolean isContinuationByte( int c ) {
+    return ( c & 0xC0 ) == 0x80;
+  }
+
+  /**
+   * @return UTF-16 length of the char starting with the given UTF-8 byte
+   */
+  private static int getColumnWidth( int leadByte ) {
+    return leadByte >= 0xF0 ? 2 : 1;
+  }
+
+  private void flushOutput() throws IOException {
+    if ( outPos > 0 ) {
+      out.write( outBuf, 0, outPos );
+      outPos = 0;
+    }
+  }
+
   /**
    * @return true if the character is a letter, digit, underscore, dollar sign, or non-ASCII character.
    */
@@ -83,8 +230,11 @@ public class JSMin {
    * it to a space or linefeed.
    */
   int get() throws IOException {
-    int c = in.read();
+    int c = fill() ? inBuf[ inPos++ ] & 0xFF : EOF;
     pos++;
+    if ( mappings != null && c != EOF ) {
+      trackInput( c );
+    }
 
     if ( c >= ' ' || c == '\n' || c == EOF ) {
       return c;
@@ -102,9 +252,7 @@ public class JSMin {
    * Get the next character without getting it.
    */
   int peek() throws IOException {
-    int lookaheadChar = in.read();
-    in.unread( lookaheadChar );
-    return lookaheadChar;
+    return fill() ? inBuf[ inPos ] & 0xFF : EOF;
   }
 
   /**
@@ -155,14 +303,16 @@ public class JSMin {
     UnterminatedCommentException, UnterminatedStringLiteralException {
     switch ( d ) {
       case 1:
-        out.write( theA );
+        write( theA, positionA );
       case 2:
         theA = theB;
+        positionA = positionB;
 
         if ( theA == '\'' || theA == '"' ) {
           for ( ;; ) {
-            out.write( theA );
+            write( theA, positionA );
             theA = get();
+            positionA = lastPosition;
             if ( theA == theB ) {
               break;
             }
@@ -170,34 +320,39 @@ public class JSMin {
               throw new UnterminatedStringLiteralException( pos );
             }
             if ( theA == '\\' ) {
-              out.write( theA );
+              write( theA, positionA );
               theA = get();
+              positionA = lastPosition;
             }
           }
         }
 
       case 3:
         theB = next();
+        positionB = lastPosition;
         if ( theB == '/' && ( theA == '(' || theA == ',' || theA == '='
             || theA == ':' || theA == '[' || theA == '!'
             || theA == '&' || theA == '|' || theA == '?'
             || theA == '{' || theA == '}' || theA == ';'
             || theA == '\n' ) ) {
-          out.write( theA );
-          out.write( theB );
+          write( theA, positionA );
+          write( theB, positionB );
           for ( ;; ) {
             theA = get();
+            positionA = lastPosition;
             if ( theA == '/' ) {
               break;
             } else if ( theA == '\\' ) {
-              out.write( theA );
+              write( theA, positionA );
               theA = get();
+              positionA = lastPosition;
             } else if ( theA <= '\n' ) {
               throw new UnterminatedRegExpLiteralException( pos );
             }
-            out.write( theA );
+            write( theA, positionA );
           }
           theB = next();
+          positionB = lastPosition;
         }
     }
   }
@@ -208,6 +363,15 @@ public class JSMin {
    * linefeeds will be removed.
    */
   public void jsmin() throws IOException, ParseException {
+    try {
+      minify();
+    } finally {
+      flushOutput();
+      out.flush();
+    }
+  }
+
+  private void minify() throws IOException, ParseException {
     theA = '\n';
     action( 3 );
     while ( theA != EOF ) {
@@ -273,7 +437,6 @@ public class JSMin {
           }
       }
     }
-    out.flush();
   }
 
 
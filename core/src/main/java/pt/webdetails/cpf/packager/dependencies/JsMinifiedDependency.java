@@ -4,6 +4,7 @@
 
 package pt.webdetails.cpf.packager.dependencies;
 
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -11,6 +12,7 @@ import pt.webdetails.cpf.Util;
 import pt.webdetails.cpf.context.api.IUrlProvider;
 import pt.webdetails.cpf.packager.origin.PathOrigin;
 import pt.webdetails.cpf.repository.api.IRWAccess;
+import pt.webdetails.cpf.utils.CharsetHelper;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -22,7 +24,8 @@ import java.util.Enumeration;
 import java.util.Iterator;
 
 /**
- * Minifies javascript files using {@link JSMin}.
+ * Minifies javascript files using {@link JSMin}, in parallel through {@link BundleBuilder}.<br>
+ * A source map is saved next to the packaged file, see {@link #getSourceMapPath()}.
  */
 public class JsMinifiedDependency extends PackagedFileDependency {
 
@@ -35,9 +38,66 @@ public class JsMinifiedDependency extends PackagedFileDependency {
 
   @Override
   protected InputStream minifyPackage( Iterable<FileDependency> inputFiles ) {
-    return new SequenceInputStream( new JsMinificationEnumeration( inputFiles.iterator() ) );
+    SourceMapGenerator sourceMap = new SourceMapGenerator();
+    InputStream minified = getBundleBuilder().build( inputFiles, new JsFragmentMinifier(), sourceMap );
+
+    String fileName = FilenameUtils.getName( filePath );
+    String sourceMapPath = getSourceMapPath();
+    try {
+      byte[] json = sourceMap.toJson( fileName ).getBytes( CharsetHelper.getEncoding() );
+      if ( getWriter().saveFile( sourceMapPath, new ByteArrayInputStream( json ) ) ) {
+        return new SequenceInputStream( minified, Util.toInputStream(
+          "\n//# sourceMappingURL=" + FilenameUtils.getName( sourceMapPath ) + "\n" ) );
+      }
+      logger.warn( "Unable to save source map " + sourceMapPath );
+    } catch ( IOException e ) {
+      logger.warn( "Unable to save source map " + sourceMapPath, e );
+    }
+    return minified;
+  }
+
+  /**
+   * @return path of the source map, next to the packaged file
+   */
+  public String getSourceMapPath() {
+    return filePath + ".map";
+  }
+
+  public static class JsFragmentMinifier implements BundleBuilder.MappingFragmentMinifier {
+
+    @Override
+    public String getFragmentKey( FileDependency dependency ) {
+      // output depends only on contents
+      return null;
+    }
+
+    @Override
+    public byte[] minify( FileDependency dependency, byte[] contents ) throws IOException {
+      return minify( dependency, contents, null );
+    }
+
+    @Override
+    public byte[] minify( FileDependency dependency, byte[] contents, JSMin.MappingListener mappings )
+      throws IOException {
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream( contents.length );
+      try {
+        JSMin jsMin = new JSMin( contents, bytesOut );
+        jsMin.setMappingListener( mappings );
+        jsMin.jsmin();
+      } catch ( ParseException e ) {
+        logger
+            .error( "Error parsing javascript dependency " + dependency + " at offset " + e.getErrorOffset()
+              + ". Skipping..", e );
+        return new byte[ 0 ];
+      }
+      return bytesOut.toByteArray();
+    }
   }
 
+  /**
+   * @deprecated packages are built by {@link BundleBuilder} with a {@link JsFragmentMinifier}
+   */
+  @Deprecated
   public static class JsMinificationEnumeration implements Enumeration<InputStream> {
 
     private Iterator<FileDependency> deps;
@@ -4,53 +4,171 @@
 
 package pt.webdetails.cpf.packager.dependencies;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import pt.webdetails.cpf.Util;
 import pt.webdetails.cpf.context.api.IUrlProvider;
 import pt.webdetails.cpf.packager.origin.PathOrigin;
+import pt.webdetails.cpf.repository.api.IContentAccessFactory;
 import pt.webdetails.cpf.repository.api.IRWAccess;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 
 /**
- * Base class for concatenated and minified files.
+ * Base class for concatenated and minified files.<br> Precompressed variants are saved next to the packaged file, see
+ * {@link #getPreferredEncoding(String)}.
  */
 public abstract class PackagedFileDependency extends FileDependency {
 
   private static Log logger = LogFactory.getLog( PackagedFileDependency.class );
 
   private Iterable<FileDependency> inputFiles;
+  private final List<FileDependency> sources;
   private IRWAccess writer;
   private boolean isSaved;
+  private Set<PrecompressedEncoding> savedEncodings = EnumSet.noneOf( PrecompressedEncoding.class );
+  private String hash;
 
   public PackagedFileDependency( PathOrigin origin, String path, IRWAccess writer, Iterable<FileDependency> inputFiles,
                                  IUrlProvider urlProvider ) {
     super( null, origin, path, urlProvider );
     this.inputFiles = inputFiles;
     this.writer = writer;
+    List<FileDependency> sources = new ArrayList<>();
+    if ( inputFiles != null ) {
+      for ( FileDependency inputFile : inputFiles ) {
+        sources.add( inputFile );
+      }
+    }
+    this.sources = Collections.unmodifiableList( sources );
+  }
+
+  /**
+   * @return the files this package is made of, in order
+   */
+  public List<FileDependency> getInputFiles() {
+    return sources;
+  }
+
+  /**
+   * @return if the given file is part of this package
+   */
+  public boolean isBuiltFrom( FileDependency dependency ) {
+    for ( FileDependency source : sources ) {
+      if ( source == dependency ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Packaged files are regenerated on first access, their md5 is taken from what was actually generated instead of
+   * trusting a timestamp that may belong to a previous build.
+   */
+  @Override
+  protected synchronized String getCheckSum() {
+    if ( hash == null ) {
+      hash = computeCheckSum();
+    }
+    return hash;
   }
 
   @Override
   public synchronized InputStream getFileInputStream() throws IOException {
+    ensureSaved();
+    return super.getFileInputStream();
+  }
+
+  /**
+   * @param acceptEncoding value of the Accept-Encoding request header, can be <code>null</code>
+   * @return the best precompressed variant for the request, <code>null</code> if the plain file should be served
+   */
+  public synchronized PrecompressedEncoding getPreferredEncoding( String acceptEncoding ) throws IOException {
+    ensureSaved();
+    return PrecompressedEncoding.select( acceptEncoding, savedEncodings );
+  }
+
+  /**
+   * @param encoding as given by {@link #getPreferredEncoding(String)}
+   * @return contents of the packaged file in that encoding
+   */
+  public synchronized InputStream getFileInputStream( PrecompressedEncoding encoding ) throws IOException {
+    if ( encoding == null ) {
+      return getFileInputStream();
+    }
+    ensureSaved();
+    if ( !savedEncodings.contains( encoding ) ) {
+      throw new IOException( "No " + encoding.getContentEncoding() + " variant of " + filePath );
+    }
+    final IContentAccessFactory contentFactory = getContentFactory();
+    if ( contentFactory == null ) {
+      return null;
+    }
+    return origin.getReader( contentFactory ).getFileInputStream( filePath + encoding.getExtension() );
+  }
+
+  private void ensureSaved() throws IOException {
     if ( !isSaved ) {
       long startTime = System.currentTimeMillis();
-      isSaved = writer.saveFile( filePath, minifyPackage( inputFiles ) );
+      byte[] contents = toByteArray( minifyPackage( inputFiles ) );
+      isSaved = writer.saveFile( filePath, new ByteArrayInputStream( contents ) );
       if ( !isSaved ) {
         throw new IOException( "Unable to save file " + filePath );
       } else {
         //release refs
         inputFiles = null;
+        savePrecompressed( contents );
         if ( logger.isDebugEnabled() ) {
           logger.debug( String.format( "Generated '%s' in %s", filePath, Util.getElapsedSeconds( startTime ) ) );
         }
       }
     }
+  }
 
-    return super.getFileInputStream();
+  private void savePrecompressed( byte[] contents ) {
+    savedEncodings.clear();
+    for ( PrecompressedEncoding encoding : PrecompressedEncoding.values() ) {
+      String path = filePath + encoding.getExtension();
+      try {
+        if ( writer.saveFile( path, new ByteArrayInputStream( encoding.compress( contents ) ) ) ) {
+          savedEncodings.add( encoding );
+        } else {
+          logger.warn( "Unable to save file " + path );
+        }
+      } catch ( IOException e ) {
+        logger.warn( "Unable to compress " + path, e );
+      }
+    }
+  }
+
+  private static byte[] toByteArray( InputStream input ) throws IOException {
+    if ( input == null ) {
+      return new byte[ 0 ];
+    }
+    try {
+      return IOUtils.toByteArray( input );
+    } finally {
+      IOUtils.closeQuietly( input );
+    }
   }
 
   protected abstract InputStream minifyPackage( Iterable<FileDependency> inputFiles );
 
+  protected IRWAccess getWriter() {
+    return writer;
+  }
+
+  protected BundleBuilder getBundleBuilder() {
+    return BundleBuilder.getInstance();
+  }
+
 }
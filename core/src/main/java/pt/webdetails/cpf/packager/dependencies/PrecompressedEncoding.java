@@ -0,0 +1,120 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.packager.dependencies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content encodings packaged files are precompressed with when saved, so they don't need to be compressed on every
+ * response. Declared in order of preference.
+ */
+public enum PrecompressedEncoding {
+
+  GZIP( "gzip", ".gz" ) {
+    @Override
+    public byte[] compress( byte[] contents ) throws IOException {
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream( contents.length / 3 + 64 );
+      GZIPOutputStream gzip = new GZIPOutputStream( bytesOut ) {
+        {
+          // done once per bundle build, go for size
+          def.setLevel( Deflater.BEST_COMPRESSION );
+        }
+      };
+      gzip.write( contents );
+      gzip.close();
+      return bytesOut.toByteArray();
+    }
+  };
+
+  private final String contentEncoding;
+  private final String extension;
+
+  PrecompressedEncoding( String contentEncoding, String extension ) {
+    this.contentEncoding = contentEncoding;
+    this.extension = extension;
+  }
+
+  /**
+   * @return value for the Content-Encoding response header
+   */
+  public String getContentEncoding() {
+    return contentEncoding;
+  }
+
+  /**
+   * @return suffix of the precompressed file, appended to the original file path
+   */
+  public String getExtension() {
+    return extension;
+  }
+
+  public abstract byte[] compress( byte[] contents ) throws IOException;
+
+  /**
+   * Picks the encoding to serve.
+   *
+   * @param acceptEncoding value of the Accept-Encoding request header, can be <code>null</code>
+   * @param available      encodings that have a precompressed file
+   * @return the available encoding with the highest quality value the client accepts, <code>null</code> if the
+   * uncompressed file should be served
+   */
+  public static PrecompressedEncoding select( String acceptEncoding, Collection<PrecompressedEncoding> available ) {
+    if ( acceptEncoding == null || available == null || available.isEmpty() ) {
+      return null;
+    }
+    PrecompressedEncoding best = null;
+    float bestQuality = 0;
+    for ( PrecompressedEncoding encoding : values() ) {
+      if ( available.contains( encoding ) ) {
+        float quality = getQuality( acceptEncoding, encoding.getContentEncoding() );
+        if ( quality > bestQuality ) {
+          best = encoding;
+          bestQuality = quality;
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * @return q value given to the coding, or to <code>*</code> if not listed, 0 if not accepted
+   */
+  static float getQuality( String acceptEncoding, String coding ) {
+    float wildcard = 0;
+    for ( String part : acceptEncoding.split( "," ) ) {
+      String[] params = part.split( ";" );
+      String name = params[ 0 ].trim();
+      float quality = 1;
+      for ( int i = 1; i < params.length; i++ ) {
+        String param = params[ i ].trim();
+        if ( param.startsWith( "q=" ) ) {
+          try {
+            quality = Float.parseFloat( param.substring( 2 ).trim() );
+          } catch ( NumberFormatException e ) {
+            quality = 0;
+          }
+        }
+      }
+      if ( name.equalsIgnoreCase( coding ) ) {
+        return quality;
+      } else if ( name.equals( "*" ) ) {
+        wildcard = quality;
+      }
+    }
+    return wildcard;
+  }
+}
@@ -0,0 +1,130 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.packager.dependencies;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a version 3 source map.<br>
+ * Mappings must be added in generated file order. Sources are referenced by url, their contents are not included.
+ */
+public class SourceMapGenerator {
+
+  private static final String BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+  private final List<String> sources = new ArrayList<>();
+  private final StringBuilder mappings = new StringBuilder();
+
+  private int generatedLine;
+  private int previousGeneratedColumn;
+  private int previousSource;
+  private int previousSourceLine;
+  private int previousSourceColumn;
+  private boolean lineHasSegments;
+
+  /**
+   * @param url where the source file can be fetched from
+   * @return index to use in {@link #addMapping(int, int, int, int, int)}
+   */
+  public int addSource( String url ) {
+    sources.add( url );
+    return sources.size() - 1;
+  }
+
+  /**
+   * All positions are 0-based. Columns are in UTF-16 code units.
+   */
+  public void addMapping( int generatedLine, int generatedColumn, int source, int sourceLine, int sourceColumn ) {
+    if ( generatedLine < this.generatedLine
+      || ( generatedLine == this.generatedLine && lineHasSegments && generatedColumn < previousGeneratedColumn ) ) {
+      throw new IllegalArgumentException( "Mappings must be added in order" );
+    }
+    while ( this.generatedLine < generatedLine ) {
+      mappings.append( ';' );
+      this.generatedLine++;
+      previousGeneratedColumn = 0;
+      lineHasSegments = false;
+    }
+    if ( lineHasSegments ) {
+      mappings.append( ',' );
+    }
+    appendVlq( generatedColumn - previousGeneratedColumn );
+    appendVlq( source - previousSource );
+    appendVlq( sourceLine - previousSourceLine );
+    appendVlq( sourceColumn - previousSourceColumn );
+    previousGeneratedColumn = generatedColumn;
+    previousSource = source;
+    previousSourceLine = sourceLine;
+    previousSourceColumn = sourceColumn;
+    lineHasSegments = true;
+  }
+
+  /**
+   * @param file name of the generated file
+   * @return the source map json
+   */
+  public String toJson( String file ) {
+    StringBuilder json = new StringBuilder( mappings.length() + 64 * sources.size() + 64 );
+    json.append( "{\"version\":3,\"file\":" );
+    appendString( json, file );
+    json.append( ",\"sources\":[" );
+    for ( int i = 0; i < sources.size(); i++ ) {
+      if ( i > 0 ) {
+        json.append( ',' );
+      }
+      appendString( json, sources.get( i ) );
+    }
+    json.append( "],\"names\":[],\"mappings\":\"" ).append( mappings ).append( "\"}" );
+    return json.toString();
+  }
+
+  /**
+   * Base64 VLQ: sign in the lowest bit, 5 bits per digit, continuation in the 6th bit.
+   */
+  private void appendVlq( int value ) {
+    int vlq = value < 0 ? ( ( -value ) << 1 ) | 1 : value << 1;
+    do {
+      int digit = vlq & 0x1F;
+      vlq >>>= 5;
+      if ( vlq > 0 ) {
+        digit |= 0x20;
+      }
+      mappings.append( BASE64.charAt( digit ) );
+    } while ( vlq > 0 );
+  }
+
+  private static void appendString( StringBuilder json, String value ) {
+    if ( value == null ) {
+      json.append( "null" );
+      return;
+    }
+    json.append( '"' );
+    for ( int i = 0; i < value.length(); i++ ) {
+      char c = value.charAt( i );
+      switch ( c ) {
+        case '"':
+        case '\\':
+          json.append( '\\' ).append( c );
+          break;
+        default:
+          if ( c < ' ' ) {
+            json.append( String.format( "\\u%04x", (int) c ) );
+          } else {
+            json.append( c );
+          }
+      }
+    }
+    json.append( '"' );
+  }
+}
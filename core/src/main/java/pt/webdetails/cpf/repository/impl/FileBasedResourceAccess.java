@@ -86,6 +86,27 @@ public abstract class FileBasedResourceAccess implements IRWAccess {
 
   protected abstract File getFile( String path );
 
+  /**
+   * Gets the listener notified whenever the file is created, modified or deleted.
+   *
+   * @return <code>false</code> if changes to the file can't be watched
+   * @see FileChangeWatcher
+   */
+  public boolean watchFile( String path, FileChangeWatcher.Listener listener ) {
+    File file = getFile( path );
+    return file != null && FileChangeWatcher.getInstance().watch( file, listener );
+  }
+
+  /**
+   * Stops notifying a listener given to {@link #watchFile(String, FileChangeWatcher.Listener)}.
+   */
+  public void unwatchFile( String path, FileChangeWatcher.Listener listener ) {
+    File file = getFile( path );
+    if ( file != null ) {
+      FileChangeWatcher.getInstance().unwatch( file, listener );
+    }
+  }
+
   public IBasicFile fetchFile( String path ) {
     return asBasicFile( getFile( path ), path );
   }
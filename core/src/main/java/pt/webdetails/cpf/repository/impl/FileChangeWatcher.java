@@ -0,0 +1,200 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Notifies listeners when watched files are created, modified or deleted.<br>
+ * Backed by a single {@link WatchService} registering the folders of watched files. Listeners are called from the
+ * watcher thread and should hand any heavy work to another thread.
+ */
+public class FileChangeWatcher {
+
+  private static Log logger = LogFactory.getLog( FileChangeWatcher.class );
+
+  private static final FileChangeWatcher instance = new FileChangeWatcher();
+
+  public interface Listener {
+    /**
+     * @param file the file that was created, modified or deleted
+     */
+    void fileChanged( File file );
+  }
+
+  private WatchService watchService;
+  private boolean unavailable;
+  private final Map<Path, WatchKey> folders = new HashMap<>();
+  private final Map<Path, List<Listener>> listeners = new HashMap<>();
+
+  public static FileChangeWatcher getInstance() {
+    return instance;
+  }
+
+  protected FileChangeWatcher() {
+  }
+
+  /**
+   * @param file     file to watch, needs not exist yet but its folder does
+   * @param listener notified on every change to the file
+   * @return <code>false</code> if changes to the file can't be watched
+   */
+  public synchronized boolean watch( File file, Listener listener ) {
+    Path path = file.toPath().toAbsolutePath().normalize();
+    Path folder = path.getParent();
+    if ( folder == null || !ensureStarted() ) {
+      return false;
+    }
+    if ( !folders.containsKey( folder ) ) {
+      try {
+        folders.put( folder, folder.register( watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE ) );
+      } catch ( IOException e ) {
+        logger.debug( "Unable to watch " + folder + ": " + e.getMessage() );
+        return false;
+      }
+    }
+    List<Listener> fileListeners = listeners.get( path );
+    if ( fileListeners == null ) {
+      fileListeners = new CopyOnWriteArrayList<>();
+      listeners.put( path, fileListeners );
+    }
+    fileListeners.add( listener );
+    return true;
+  }
+
+  /**
+   * Stops notifying a listener given to {@link #watch(File, Listener)}.
+   */
+  public synchronized void unwatch( File file, Listener listener ) {
+    Path path = file.toPath().toAbsolutePath().normalize();
+    List<Listener> fileListeners = listeners.get( path );
+    if ( fileListeners != null && fileListeners.remove( listener ) && fileListeners.isEmpty() ) {
+      listeners.remove( path );
+      Path folder = path.getParent();
+      if ( !isWatched( folder ) ) {
+        WatchKey key = folders.remove( folder );
+        if ( key != null ) {
+          key.cancel();
+        }
+      }
+    }
+  }
+
+  private boolean isWatched( Path folder ) {
+    for ( Path path : listeners.keySet() ) {
+      if ( folder.equals( path.getParent() ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean ensureStarted() {
+    if ( watchService == null && !unavailable ) {
+      try {
+        watchService = FileSystems.getDefault().newWatchService();
+      } catch ( IOException | UnsupportedOperationException e ) {
+        logger.warn( "File changes can't be watched: " + e.getMessage() );
+        unavailable = true;
+        return false;
+      }
+      Thread thread = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          processEvents();
+        }
+      }, "cpf-file-watcher" );
+      thread.setDaemon( true );
+      thread.start();
+    }
+    return watchService != null;
+  }
+
+  private void processEvents() {
+    while ( true ) {
+      WatchKey key;
+      try {
+        key = watchService.take();
+      } catch ( InterruptedException | ClosedWatchServiceException e ) {
+        return;
+      }
+      Path folder = (Path) key.watchable();
+      for ( WatchEvent<?> event : key.pollEvents() ) {
+        if ( event.kind() == OVERFLOW ) {
+          // lost track of what changed
+          for ( Path path : getWatchedFiles( folder ) ) {
+            notifyListeners( path );
+          }
+        } else {
+          notifyListeners( folder.resolve( (Path) event.context() ) );
+        }
+      }
+      if ( !key.reset() ) {
+        // folder is gone
+        synchronized ( this ) {
+          if ( folders.get( folder ) == key ) {
+            folders.remove( folder );
+          }
+        }
+      }
+    }
+  }
+
+  private synchronized List<Path> getWatchedFiles( Path folder ) {
+    List<Path> files = new ArrayList<>();
+    for ( Path path : listeners.keySet() ) {
+      if ( folder.equals( path.getParent() ) ) {
+        files.add( path );
+      }
+    }
+    return files;
+  }
+
+  private void notifyListeners( Path path ) {
+    List<Listener> fileListeners;
+    synchronized ( this ) {
+      fileListeners = listeners.get( path );
+    }
+    if ( fileListeners == null ) {
+      return;
+    }
+    File file = path.toFile();
+    for ( Listener listener : fileListeners ) {
+      try {
+        listener.fileChanged( file );
+      } catch ( RuntimeException e ) {
+        logger.error( "Error notifying change to " + file, e );
+      }
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+/**
+ * Stops calls to a remote server after consecutive failures, so callers fail fast instead of waiting on it.<br>
+ * Once open, it lets a single call through after a while; the circuit closes again if that call succeeds and stays
+ * open for another while if it fails.
+ */
+public class CircuitBreaker {
+
+  public enum State { CLOSED, OPEN, HALF_OPEN }
+
+  private final int failureThreshold;
+  private final long openMillis;
+
+  private State state = State.CLOSED;
+  private int failures;
+  private long openUntil;
+  private long trips;
+
+  /**
+   * @param failureThreshold consecutive failures that open the circuit
+   * @param openMillis       how long calls are refused once open
+   */
+  public CircuitBreaker( int failureThreshold, long openMillis ) {
+    this.failureThreshold = Math.max( 1, failureThreshold );
+    this.openMillis = openMillis;
+  }
+
+  /**
+   * @return if a call may be made now; when half open, only the first caller is allowed to try
+   */
+  public synchronized boolean allowRequest() {
+    switch ( state ) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if ( currentTimeMillis() >= openUntil ) {
+          state = State.HALF_OPEN;
+          return true;
+        }
+        return false;
+      default:
+        // trial call in progress
+        return false;
+    }
+  }
+
+  public synchronized void onSuccess() {
+    failures = 0;
+    state = State.CLOSED;
+  }
+
+  public synchronized void onFailure() {
+    failures++;
+    if ( state == State.HALF_OPEN || ( state == State.CLOSED && failures >= failureThreshold ) ) {
+      state = State.OPEN;
+      openUntil = currentTimeMillis() + openMillis;
+      trips++;
+    }
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * @return times the circuit opened
+   */
+  public synchronized long getTrips() {
+    return trips;
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+}
@@ -0,0 +1,241 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import pt.webdetails.cpf.Util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Local copies of remote file contents, so unchanged files aren't downloaded again.<br>
+ * Contents are stored on disk by digest, files with the same contents share the copy. Each path is mirrored along with
+ * a validator for the version it was downloaded at, e.g. its last modified date, and is only served for that same
+ * validator. Least recently used paths are dropped when the contents go over the size limit.<br>
+ * Each mirror keeps its contents in a directory of its own, deleted on exit, as several plugins may mirror the same
+ * server under the same root.
+ */
+public class ContentMirror {
+
+  private static Log logger = LogFactory.getLog( ContentMirror.class );
+
+  private static final String PATH_SEPARATOR = "/";
+  private static final String DIGEST = "SHA-256";
+  private static final String TEMP_PREFIX = "download";
+  private static final String DIR_PREFIX = "mirror";
+
+  private final File dir;
+  private final long maxBytes;
+
+  // by path, most recently used last
+  private final Map<String, Entry> entries = new LinkedHashMap<>( 16, 0.75f, true );
+  // paths using each stored file, by digest
+  private final Map<String, Integer> references = new HashMap<>();
+  private long size;
+
+  /**
+   * @param root     where to create the directory keeping the contents
+   * @param maxBytes size limit for the stored contents
+   */
+  public ContentMirror( File root, long maxBytes ) throws IOException {
+    FileUtils.forceMkdir( root );
+    this.dir = Files.createTempDirectory( root.toPath(), DIR_PREFIX ).toFile();
+    this.maxBytes = maxBytes;
+    Runtime.getRuntime().addShutdownHook( new Thread( "cpf-mirror-cleanup" ) {
+      @Override
+      public void run() {
+        FileUtils.deleteQuietly( dir );
+      }
+    } );
+  }
+
+  /**
+   * @return where the contents are kept
+   */
+  public File getDirectory() {
+    return dir;
+  }
+
+  /**
+   * @param path      full repository path
+   * @param validator identifies the current version of the file
+   * @return the mirrored contents if mirrored for the same validator, <code>null</code> otherwise
+   */
+  public InputStream get( String path, String validator ) {
+    File file;
+    synchronized ( entries ) {
+      Entry entry = entries.get( path );
+      if ( entry == null || !entry.validator.equals( validator ) ) {
+        return null;
+      }
+      file = getFile( entry.digest );
+    }
+    try {
+      return new FileInputStream( file );
+    } catch ( FileNotFoundException e ) {
+      logger.warn( "Mirrored contents of " + path + " missing", e );
+      invalidate( path );
+      return null;
+    }
+  }
+
+  /**
+   * Mirrors the contents of a file.
+   *
+   * @param path      full repository path
+   * @param validator identifies the downloaded version of the file
+   * @param contents  downloaded contents, read to the end and closed
+   * @return the contents as stored
+   */
+  public InputStream put( String path, String validator, InputStream contents ) throws IOException {
+    File temp = File.createTempFile( TEMP_PREFIX, null, dir );
+    String digest;
+    try {
+      MessageDigest messageDigest = MessageDigest.getInstance( DIGEST );
+      try ( InputStream input = new DigestInputStream( contents, messageDigest );
+            OutputStream output = new FileOutputStream( temp ) ) {
+        IOUtils.copy( input, output );
+      }
+      digest = Util.bytesToHex( messageDigest.digest() );
+    } catch ( NoSuchAlgorithmException e ) {
+      FileUtils.deleteQuietly( temp );
+      throw new IOException( e );
+    } catch ( IOException e ) {
+      FileUtils.deleteQuietly( temp );
+      throw e;
+    }
+
+    File file = getFile( digest );
+    InputStream stored;
+    synchronized ( entries ) {
+      Entry previous = entries.remove( path );
+      if ( references.containsKey( digest ) || file.exists() ) {
+        // same contents as another path
+        FileUtils.deleteQuietly( temp );
+      } else if ( !temp.renameTo( file ) ) {
+        FileUtils.deleteQuietly( temp );
+        throw new IOException( "Unable to store mirrored contents of " + path );
+      }
+      entries.put( path, new Entry( validator, digest, file.length() ) );
+      addReference( digest, file.length() );
+      // opened before evicting, the file may go above the limit by itself
+      stored = new FileInputStream( file );
+      if ( previous != null ) {
+        removeReference( previous );
+      }
+      evict();
+    }
+    return stored;
+  }
+
+  public void invalidate( String path ) {
+    synchronized ( entries ) {
+      Entry entry = entries.remove( path );
+      if ( entry != null ) {
+        removeReference( entry );
+      }
+    }
+  }
+
+  /**
+   * Drops the path and everything under it.
+   */
+  public void invalidateTree( String path ) {
+    String prefix = path.endsWith( PATH_SEPARATOR ) ? path : path + PATH_SEPARATOR;
+    synchronized ( entries ) {
+      invalidate( path );
+      for ( Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+        Map.Entry<String, Entry> entry = it.next();
+        if ( entry.getKey().startsWith( prefix ) ) {
+          it.remove();
+          removeReference( entry.getValue() );
+        }
+      }
+    }
+  }
+
+  /**
+   * @return bytes taken by the stored contents
+   */
+  public long size() {
+    synchronized ( entries ) {
+      return size;
+    }
+  }
+
+  private File getFile( String digest ) {
+    return new File( dir, digest );
+  }
+
+  private void addReference( String digest, long length ) {
+    Integer count = references.get( digest );
+    if ( count == null ) {
+      references.put( digest, 1 );
+      size += length;
+    } else {
+      references.put( digest, count + 1 );
+    }
+  }
+
+  private void removeReference( Entry entry ) {
+    int count = references.get( entry.digest );
+    if ( count > 1 ) {
+      references.put( entry.digest, count - 1 );
+      return;
+    }
+    references.remove( entry.digest );
+    size -= entry.length;
+    File file = getFile( entry.digest );
+    if ( !file.delete() && file.exists() ) {
+      // still open somewhere
+      file.deleteOnExit();
+    }
+  }
+
+  private void evict() {
+    for ( Iterator<Entry> it = entries.values().iterator(); size > maxBytes && it.hasNext(); ) {
+      Entry eldest = it.next();
+      it.remove();
+      removeReference( eldest );
+    }
+  }
+
+  private static class Entry {
+    private final String validator;
+    private final String digest;
+    private final long length;
+
+    private Entry( String validator, String digest, long length ) {
+      this.validator = validator;
+      this.digest = digest;
+      this.length = length;
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of remote file metadata, by full repository path.<br>
+ * Entries are fresh for a fixed time after being fetched. Stale entries are kept, along with the validators the server
+ * sent, so they can be revalidated with a conditional request instead of fetched again.
+ *
+ * @param <T> metadata type
+ */
+public class MetadataCache<T> {
+
+  private static final String PATH_SEPARATOR = "/";
+
+  private final long ttlMillis;
+  private final Map<String, Entry<T>> entries;
+
+  /**
+   * @param maxEntries least recently used entries are dropped above this size
+   * @param ttlMillis  how long an entry is used without asking the server
+   */
+  public MetadataCache( final int maxEntries, long ttlMillis ) {
+    this.ttlMillis = ttlMillis;
+    this.entries = new LinkedHashMap<String, Entry<T>>( 16, 0.75f, true ) {
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<String, Entry<T>> eldest ) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * @return the entry for the path, fresh or not, <code>null</code> if there is none
+   */
+  public Entry<T> get( String path ) {
+    synchronized ( entries ) {
+      return entries.get( path );
+    }
+  }
+
+  /**
+   * @return the metadata for the path if it can be used without asking the server, <code>null</code> otherwise
+   */
+  public T getFresh( String path ) {
+    Entry<T> entry = get( path );
+    return entry != null && isFresh( entry ) ? entry.getValue() : null;
+  }
+
+  public boolean isFresh( Entry<T> entry ) {
+    return currentTimeMillis() < entry.expires;
+  }
+
+  /**
+   * @param etag         <code>ETag</code> header of the response, if any
+   * @param lastModified <code>Last-Modified</code> header of the response, if any
+   * @return the new entry
+   */
+  public Entry<T> put( String path, T value, String etag, String lastModified ) {
+    Entry<T> entry = new Entry<>( value, etag, lastModified, currentTimeMillis() + ttlMillis );
+    synchronized ( entries ) {
+      entries.put( path, entry );
+    }
+    return entry;
+  }
+
+  /**
+   * The server confirmed the entry is still valid.
+   */
+  public void revalidated( Entry<T> entry ) {
+    entry.expires = currentTimeMillis() + ttlMillis;
+  }
+
+  public void invalidate( String path ) {
+    synchronized ( entries ) {
+      entries.remove( path );
+    }
+  }
+
+  /**
+   * Removes the entries for the path and everything under it.
+   */
+  public void invalidateTree( String path ) {
+    String prefix = path.endsWith( PATH_SEPARATOR ) ? path : path + PATH_SEPARATOR;
+    synchronized ( entries ) {
+      entries.remove( path );
+      for ( Iterator<String> it = entries.keySet().iterator(); it.hasNext(); ) {
+        if ( it.next().startsWith( prefix ) ) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  public void clear() {
+    synchronized ( entries ) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized ( entries ) {
+      return entries.size();
+    }
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  public static class Entry<T> {
+    private final T value;
+    private final String etag;
+    private final String lastModified;
+    private volatile long expires;
+
+    private Entry( T value, String etag, String lastModified, long expires ) {
+      this.value = value;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.expires = expires;
+    }
+
+    public T getValue() {
+      return value;
+    }
+
+    public String getETag() {
+      return etag;
+    }
+
+    public String getLastModified() {
+      return lastModified;
+    }
+
+    /**
+     * @return if the server sent anything a conditional request can be made with
+     */
+    public boolean canRevalidate() {
+      return etag != null || lastModified != null;
+    }
+  }
+}
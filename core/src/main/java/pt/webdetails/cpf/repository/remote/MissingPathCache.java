@@ -0,0 +1,119 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Remote paths known not to exist, so that probing for optional files doesn't ask the server every time.<br>
+ * Entries expire quickly and are dropped when something is created at, above or below their path. Paths are kept
+ * sorted so everything under a folder can be found without a full scan.
+ */
+public class MissingPathCache {
+
+  private static final String PATH_SEPARATOR = "/";
+
+  private final int maxEntries;
+  private final long ttlMillis;
+  // path to expiry time
+  private final ConcurrentNavigableMap<String, Long> entries = new ConcurrentSkipListMap<>();
+
+  /**
+   * @param maxEntries expired entries are purged above this size, then arbitrary ones
+   * @param ttlMillis  how long a path is taken as missing without asking the server
+   */
+  public MissingPathCache( int maxEntries, long ttlMillis ) {
+    this.maxEntries = Math.max( 1, maxEntries );
+    this.ttlMillis = ttlMillis;
+  }
+
+  /**
+   * @return if the path was recently found not to exist
+   */
+  public boolean isMissing( String path ) {
+    Long expires = entries.get( path );
+    if ( expires == null ) {
+      return false;
+    }
+    if ( currentTimeMillis() < expires ) {
+      return true;
+    }
+    entries.remove( path, expires );
+    return false;
+  }
+
+  /**
+   * The server answered that the path does not exist.
+   */
+  public void add( String path ) {
+    if ( ttlMillis <= 0 ) {
+      return;
+    }
+    entries.put( path, currentTimeMillis() + ttlMillis );
+    if ( entries.size() > maxEntries ) {
+      purge();
+    }
+  }
+
+  /**
+   * Something was created or changed at the path: it and its parent folders exist, and anything under it may too.
+   */
+  public void invalidate( String path ) {
+    if ( entries.isEmpty() ) {
+      return;
+    }
+    String prefix = path.endsWith( PATH_SEPARATOR ) ? path : path + PATH_SEPARATOR;
+    entries.subMap( prefix, true, prefix + Character.MAX_VALUE, false ).clear();
+
+    String ancestor = path;
+    while ( !ancestor.isEmpty() ) {
+      entries.remove( ancestor );
+      int split = ancestor.lastIndexOf( PATH_SEPARATOR );
+      if ( split < 0 ) {
+        break;
+      }
+      ancestor = ancestor.substring( 0, split );
+      if ( split == 0 ) {
+        entries.remove( PATH_SEPARATOR );
+      }
+    }
+  }
+
+  public void clear() {
+    entries.clear();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  private void purge() {
+    long now = currentTimeMillis();
+    for ( Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+      if ( now >= it.next().getValue() ) {
+        it.remove();
+      }
+    }
+    // still full of live entries
+    while ( entries.size() > maxEntries ) {
+      entries.pollFirstEntry();
+    }
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+}
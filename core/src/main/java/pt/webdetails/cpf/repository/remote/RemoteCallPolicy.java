@@ -0,0 +1,179 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How calls to a remote server are made: reads are retried with jittered backoff, and all calls go through a
+ * {@link CircuitBreaker} so they fail fast while the server is down.<br>
+ * Anything a call throws counts as a server failure, so calls are expected to return normally on client errors such as
+ * a missing file.
+ */
+public class RemoteCallPolicy {
+
+  private static Log logger = LogFactory.getLog( RemoteCallPolicy.class );
+
+  private final CircuitBreaker breaker;
+  private final int maxRetries;
+  private final long retryDelayMillis;
+
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+
+  /**
+   * @param breaker          shared by all calls to the server
+   * @param maxRetries       retries after a failed read
+   * @param retryDelayMillis base delay before a retry, doubled for each one and randomized
+   */
+  public RemoteCallPolicy( CircuitBreaker breaker, int maxRetries, long retryDelayMillis ) {
+    this.breaker = breaker;
+    this.maxRetries = Math.max( 0, maxRetries );
+    this.retryDelayMillis = Math.max( 1, retryDelayMillis );
+  }
+
+  /**
+   * Makes an idempotent call, retrying it on failure while within the timeout.
+   *
+   * @param timeoutMillis time after which no more retries are started
+   * @throws RemoteUnavailableException if the circuit is open
+   */
+  public <T> T read( Callable<T> call, long timeoutMillis ) throws IOException {
+    long deadline = currentTimeMillis() + timeoutMillis;
+    for ( int attempt = 0; ; attempt++ ) {
+      try {
+        return attempt( call );
+      } catch ( RemoteUnavailableException e ) {
+        throw e;
+      } catch ( IOException | RuntimeException e ) {
+        long delay = getRetryDelay( attempt );
+        if ( attempt >= maxRetries || currentTimeMillis() + delay >= deadline ) {
+          throw e;
+        }
+        logger.debug( "Retrying remote call in " + delay + "ms after: " + e );
+        retries.incrementAndGet();
+        sleep( delay );
+      }
+    }
+  }
+
+  /**
+   * Makes a call that is not safe to repeat, so it isn't retried.
+   *
+   * @throws RemoteUnavailableException if the circuit is open
+   */
+  public <T> T write( Callable<T> call ) throws IOException {
+    return attempt( call );
+  }
+
+  /**
+   * @return if calls are being refused
+   */
+  public boolean isOpen() {
+    return breaker.getState() == CircuitBreaker.State.OPEN;
+  }
+
+  public CircuitBreaker getBreaker() {
+    return breaker;
+  }
+
+  /**
+   * @return calls made to the server, including retries
+   */
+  public long getCalls() {
+    return calls.get();
+  }
+
+  public long getFailures() {
+    return failures.get();
+  }
+
+  public long getRetries() {
+    return retries.get();
+  }
+
+  /**
+   * @return calls refused while the circuit was open
+   */
+  public long getRejected() {
+    return rejected.get();
+  }
+
+  @Override
+  public String toString() {
+    return "RemoteCallPolicy[state=" + breaker.getState() + ", trips=" + breaker.getTrips() + ", calls=" + calls
+      + ", failures=" + failures + ", retries=" + retries + ", rejected=" + rejected + "]";
+  }
+
+  private <T> T attempt( Callable<T> call ) throws IOException {
+    if ( !breaker.allowRequest() ) {
+      rejected.incrementAndGet();
+      throw new RemoteUnavailableException( "Remote server unavailable after repeated failures" );
+    }
+    calls.incrementAndGet();
+    try {
+      T result = call.call();
+      breaker.onSuccess();
+      return result;
+    } catch ( IOException | RuntimeException e ) {
+      onFailure();
+      throw e;
+    } catch ( Exception e ) {
+      onFailure();
+      throw new IOException( e );
+    } catch ( Error e ) {
+      // a trial call must be reported, or the circuit never closes again
+      onFailure();
+      throw e;
+    }
+  }
+
+  private void onFailure() {
+    failures.incrementAndGet();
+    long trips = breaker.getTrips();
+    breaker.onFailure();
+    if ( breaker.getTrips() != trips ) {
+      logger.warn( "Remote server failing, refusing calls for a while: " + this );
+    }
+  }
+
+  /**
+   * Full jitter: anywhere from zero to the exponential backoff.
+   */
+  private long getRetryDelay( int attempt ) {
+    long backoff = retryDelayMillis << Math.min( attempt, 16 );
+    return ThreadLocalRandom.current().nextLong( backoff + 1 );
+  }
+
+  protected void sleep( long millis ) throws InterruptedIOException {
+    try {
+      Thread.sleep( millis );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "Interrupted while waiting to retry" );
+    }
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+}
@@ -0,0 +1,113 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import java.nio.charset.Charset;
+import java.util.Base64;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * What the HTTP clients of a remote repository share between requests: the credentials, encoded once, and a bounded
+ * pool of workers for asynchronous calls.<br>
+ * The pool size caps the concurrent requests to the server, so it should not exceed the connections the HTTP client
+ * keeps alive to it.
+ */
+public class RemoteTransport {
+
+  private static final Charset CREDENTIALS_CHARSET = Charset.forName( "iso-8859-1" );
+  private static final long IDLE_SECONDS = 60;
+  private static final AtomicInteger transportCount = new AtomicInteger();
+
+  private final String authorization;
+  private final int connections;
+  private final ThreadPoolExecutor executor;
+
+  /**
+   * @param connections maximum concurrent asynchronous requests
+   */
+  public RemoteTransport( String username, String password, int connections ) {
+    this.authorization = basicAuthorization( username, password );
+    this.connections = Math.max( 1, connections );
+    final String threadPrefix = "cpf-remote-" + transportCount.incrementAndGet() + "-";
+    this.executor = new ThreadPoolExecutor( this.connections, this.connections, IDLE_SECONDS, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable runnable ) {
+          Thread thread = new Thread( runnable, threadPrefix + threadCount.incrementAndGet() );
+          thread.setDaemon( true );
+          return thread;
+        }
+      } );
+    // no threads kept for idle servers
+    this.executor.allowCoreThreadTimeOut( true );
+  }
+
+  /**
+   * @return the <code>Authorization</code> header value for every request
+   */
+  public String getAuthorization() {
+    return authorization;
+  }
+
+  public int getConnections() {
+    return connections;
+  }
+
+  /**
+   * Runs a blocking call in the pool.
+   *
+   * @return completes with the call result, or exceptionally with what it threw
+   */
+  public <T> CompletableFuture<T> submit( final Callable<T> call ) {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    executor.execute( new Runnable() {
+      @Override
+      public void run() {
+        if ( future.isDone() ) {
+          // cancelled while queued
+          return;
+        }
+        try {
+          future.complete( call.call() );
+        } catch ( Throwable t ) {
+          future.completeExceptionally( t );
+        }
+      }
+    } );
+    return future;
+  }
+
+  /**
+   * Stops accepting calls, the ones already submitted still run.
+   */
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  public static String basicAuthorization( String username, String password ) {
+    byte[] prefix = ( username + ":" ).getBytes( CREDENTIALS_CHARSET );
+    byte[] passwordBytes = password.getBytes();
+    byte[] credentials = new byte[ prefix.length + passwordBytes.length ];
+    System.arraycopy( prefix, 0, credentials, 0, prefix.length );
+    System.arraycopy( passwordBytes, 0, credentials, prefix.length, passwordBytes.length );
+    return "Basic " + Base64.getEncoder().encodeToString( credentials );
+  }
+}
@@ -0,0 +1,29 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import java.io.IOException;
+
+/**
+ * A remote call was refused without trying, as the server has been failing.
+ *
+ * @see CircuitBreaker
+ */
+public class RemoteUnavailableException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  public RemoteUnavailableException( String message ) {
+    super( message );
+  }
+}
@@ -0,0 +1,102 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces identical concurrent remote calls: while a call for a key is in flight, other callers for the same key
+ * wait for it and get its result, or its exception, instead of making their own.<br>
+ * Nothing is kept once the call completes, callers arriving after that make a new one.
+ *
+ * @param <K> identifies the call, e.g. the path and operation
+ * @param <V> call result, shared by all the callers
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final AtomicLong shared = new AtomicLong();
+
+  /**
+   * Makes the call, unless one for the same key is in flight.
+   *
+   * @return the result of the call made for the key
+   */
+  public V run( K key, Callable<V> call ) throws IOException {
+    CompletableFuture<V> flight = new CompletableFuture<>();
+    CompletableFuture<V> current = inFlight.putIfAbsent( key, flight );
+    if ( current != null ) {
+      shared.incrementAndGet();
+      return await( current );
+    }
+    try {
+      V result = call.call();
+      flight.complete( result );
+      return result;
+    } catch ( IOException | RuntimeException e ) {
+      flight.completeExceptionally( e );
+      throw e;
+    } catch ( Exception e ) {
+      flight.completeExceptionally( e );
+      throw new IOException( e );
+    } catch ( Error e ) {
+      // callers already waiting must not be left hanging
+      flight.completeExceptionally( e );
+      throw e;
+    } finally {
+      inFlight.remove( key, flight );
+    }
+  }
+
+  /**
+   * @return calls answered with the result of another caller's call
+   */
+  public long getShared() {
+    return shared.get();
+  }
+
+  /**
+   * @return calls currently in flight
+   */
+  public int size() {
+    return inFlight.size();
+  }
+
+  private V await( CompletableFuture<V> flight ) throws IOException {
+    try {
+      return flight.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "Interrupted while waiting for a remote call" );
+    } catch ( ExecutionException e ) {
+      Throwable cause = e.getCause();
+      if ( cause instanceof IOException ) {
+        throw (IOException) cause;
+      }
+      if ( cause instanceof RuntimeException ) {
+        throw (RuntimeException) cause;
+      }
+      if ( cause instanceof Error ) {
+        throw (Error) cause;
+      }
+      throw new IOException( cause );
+    }
+  }
+}
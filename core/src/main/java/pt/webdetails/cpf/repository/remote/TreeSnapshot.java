@@ -0,0 +1,161 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Files of a remote folder tree as fetched in one request, indexed by full repository path.<br>
+ * Besides listings, it answers whether any path within its root and depth exists.
+ *
+ * @param <T> file metadata type
+ */
+public class TreeSnapshot<T> {
+
+  private static final String PATH_SEPARATOR = "/";
+
+  private final String root;
+  private final int depth;
+  private final boolean includesHidden;
+  // in tree order
+  private final Map<String, T> files = new LinkedHashMap<>();
+
+  /**
+   * @param root           full path of the tree root
+   * @param depth          levels fetched below the root, negative if all
+   * @param includesHidden if hidden files were fetched
+   */
+  public TreeSnapshot( String root, int depth, boolean includesHidden ) {
+    this.root = normalize( root );
+    this.depth = depth < 0 ? -1 : depth;
+    this.includesHidden = includesHidden;
+  }
+
+  /**
+   * Adds a file, in tree order.
+   */
+  public void add( String path, T file ) {
+    files.put( normalize( path ), file );
+  }
+
+  public String getRoot() {
+    return root;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public boolean includesHidden() {
+    return includesHidden;
+  }
+
+  public int size() {
+    return files.size();
+  }
+
+  /**
+   * @return if the path is within the fetched levels, meaning a file not in the snapshot doesn't exist, provided the
+   * snapshot {@link #includesHidden()}
+   */
+  public boolean covers( String path ) {
+    int level = getLevel( normalize( path ) );
+    return level >= 0 && ( depth < 0 || level <= depth );
+  }
+
+  /**
+   * @return if a listing of <code>path</code> down to <code>levels</code> can be taken from this snapshot
+   */
+  public boolean covers( String path, int levels ) {
+    int level = getLevel( normalize( path ) );
+    if ( level < 0 ) {
+      return false;
+    }
+    if ( depth < 0 ) {
+      return true;
+    }
+    return levels >= 0 && level + levels <= depth;
+  }
+
+  /**
+   * @return the file at the path, <code>null</code> if not in the snapshot
+   */
+  public T get( String path ) {
+    return files.get( normalize( path ) );
+  }
+
+  /**
+   * @param path   folder to list, included in the result if present
+   * @param levels levels below it, negative if all
+   * @return files in tree order
+   */
+  public List<T> list( String path, int levels ) {
+    String folder = normalize( path );
+    int maxLevel = levels < 0 ? Integer.MAX_VALUE : levels;
+    List<T> result = new ArrayList<>();
+    for ( Map.Entry<String, T> file : files.entrySet() ) {
+      int level = getLevel( folder, file.getKey() );
+      if ( level >= 0 && level <= maxLevel ) {
+        result.add( file.getValue() );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return if the path or one of its ancestors is the root, or the root is under the path
+   */
+  public boolean overlaps( String path ) {
+    String other = normalize( path );
+    return getLevel( root, other ) >= 0 || getLevel( other, root ) >= 0;
+  }
+
+  private int getLevel( String path ) {
+    return getLevel( root, path );
+  }
+
+  /**
+   * @return levels of the path below the folder, negative if not under it
+   */
+  private static int getLevel( String folder, String path ) {
+    if ( path.equals( folder ) ) {
+      return 0;
+    }
+    String prefix = folder.equals( PATH_SEPARATOR ) ? folder : folder + PATH_SEPARATOR;
+    if ( !path.startsWith( prefix ) ) {
+      return -1;
+    }
+    return countLevels( path.substring( prefix.length() ) );
+  }
+
+  private static int countLevels( String relativePath ) {
+    int levels = 1;
+    for ( int i = relativePath.indexOf( PATH_SEPARATOR ); i >= 0; i = relativePath.indexOf( PATH_SEPARATOR, i + 1 ) ) {
+      levels++;
+    }
+    return levels;
+  }
+
+  static String normalize( String path ) {
+    if ( path == null || path.isEmpty() ) {
+      return PATH_SEPARATOR;
+    }
+    if ( path.length() > 1 && path.endsWith( PATH_SEPARATOR ) ) {
+      return path.substring( 0, path.length() - 1 );
+    }
+    return path;
+  }
+}
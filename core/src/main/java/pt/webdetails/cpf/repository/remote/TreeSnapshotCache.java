@@ -0,0 +1,120 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recently fetched {@link TreeSnapshot}s, used for listings and metadata of any file they cover until they expire.
+ *
+ * @param <T> file metadata type
+ */
+public class TreeSnapshotCache<T> {
+
+  private final long ttlMillis;
+  // by root, most recently used last
+  private final Map<String, Entry<T>> snapshots;
+
+  /**
+   * @param maxSnapshots least recently used snapshots are dropped above this number
+   * @param ttlMillis    how long a snapshot is used after being fetched
+   */
+  public TreeSnapshotCache( final int maxSnapshots, long ttlMillis ) {
+    this.ttlMillis = ttlMillis;
+    this.snapshots = new LinkedHashMap<String, Entry<T>>( 16, 0.75f, true ) {
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<String, Entry<T>> eldest ) {
+        return size() > maxSnapshots;
+      }
+    };
+  }
+
+  /**
+   * Replaces any snapshot with the same root.
+   */
+  public void put( TreeSnapshot<T> snapshot ) {
+    Entry<T> entry = new Entry<>( snapshot, currentTimeMillis() + ttlMillis );
+    synchronized ( snapshots ) {
+      snapshots.put( snapshot.getRoot(), entry );
+    }
+  }
+
+  /**
+   * @return a fresh snapshot a listing of the folder can be taken from, <code>null</code> if none
+   */
+  public TreeSnapshot<T> getListing( String folder, int levels, boolean showHidden ) {
+    long now = currentTimeMillis();
+    synchronized ( snapshots ) {
+      for ( Entry<T> entry : snapshots.values() ) {
+        TreeSnapshot<T> snapshot = entry.snapshot;
+        if ( now < entry.expires && ( snapshot.includesHidden() || !showHidden )
+          && snapshot.covers( folder, levels ) ) {
+          return snapshot;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return a fresh snapshot that knows if the file exists, <code>null</code> if none
+   */
+  public TreeSnapshot<T> getCovering( String path ) {
+    long now = currentTimeMillis();
+    synchronized ( snapshots ) {
+      for ( Entry<T> entry : snapshots.values() ) {
+        TreeSnapshot<T> snapshot = entry.snapshot;
+        if ( now < entry.expires && snapshot.covers( path )
+          && ( snapshot.includesHidden() || snapshot.get( path ) != null ) ) {
+          return snapshot;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Drops the snapshots that include the path or are under it.
+   */
+  public void invalidate( String path ) {
+    synchronized ( snapshots ) {
+      for ( Iterator<Entry<T>> it = snapshots.values().iterator(); it.hasNext(); ) {
+        if ( it.next().snapshot.overlaps( path ) ) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  public void clear() {
+    synchronized ( snapshots ) {
+      snapshots.clear();
+    }
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private static class Entry<T> {
+    private final TreeSnapshot<T> snapshot;
+    private final long expires;
+
+    private Entry( TreeSnapshot<T> snapshot, long expires ) {
+      this.snapshot = snapshot;
+      this.expires = expires;
+    }
+  }
+}
@@ -13,28 +13,46 @@
 
 package pt.webdetails.cpf.packager;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import pt.webdetails.cpf.PluginEnvironment;
 import pt.webdetails.cpf.context.api.IUrlProvider;
 import pt.webdetails.cpf.packager.dependencies.CssMinifiedDependency;
 import pt.webdetails.cpf.packager.dependencies.Dependency;
+import pt.webdetails.cpf.packager.dependencies.FileDependency;
 import pt.webdetails.cpf.packager.dependencies.JsMinifiedDependency;
 import pt.webdetails.cpf.packager.dependencies.MapDependency;
 import pt.webdetails.cpf.packager.origin.PathOrigin;
 import pt.webdetails.cpf.repository.api.IContentAccessFactory;
+import pt.webdetails.cpf.repository.api.IRWAccess;
+import pt.webdetails.cpf.repository.impl.FileBasedResourceAccess;
+import pt.webdetails.cpf.repository.impl.FileChangeWatcher;
 
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.endsWith;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class DependenciesPackageTest {
@@ -261,6 +279,187 @@ public class DependenciesPackageTest {
     assertEquals( "", mapFilter.filter( "MAP-FILTER", untrustedBaseUrl ) );
   }
 
+  @Test
+  public void testFilteredPackageIsCached() {
+    IRWAccess mockWriter = mock( IRWAccess.class );
+    when( mockWriter.saveFile( anyString(), any( InputStream.class ) ) ).thenReturn( true );
+    when( mockFactory.getPluginSystemWriter( anyString() ) ).thenReturn( mockWriter );
+
+    addFileDependencies( new String[]{"path1", "path2"} );
+    DependenciesPackage.IDependencyInclusionFilter onlyFirst = new DependenciesPackage.IDependencyInclusionFilter() {
+      @Override
+      public boolean include( Dependency dependency ) {
+        return "path1".equals( dependency.toString() );
+      }
+    };
+
+    String first = jsDepPackage.getDependencies( true, onlyFirst );
+    String second = jsDepPackage.getDependencies( true, onlyFirst );
+    assertEquals( first, second );
+    assertTrue( first.contains( "/js/" + JS_PACKAGE_NAME + "-" ) );
+    verify( mockWriter, times( 1 ) ).saveFile( endsWith( ".js" ), any( InputStream.class ) );
+
+    // a different selection gets its own package
+    String all = jsDepPackage.getDependencies( true, new DependenciesPackage.IDependencyInclusionFilter() {
+      @Override
+      public boolean include( Dependency dependency ) {
+        return true;
+      }
+    } );
+    assertNotEquals( first, all );
+    verify( mockWriter, times( 2 ) ).saveFile( endsWith( ".js" ), any( InputStream.class ) );
+
+    // registering a dependency invalidates cached packages
+    jsDepPackage.registerFileDependency( "file3.js", "v3", mockPathOrigin, "path3" );
+    assertEquals( first, jsDepPackage.getDependencies( true, onlyFirst ) );
+    verify( mockWriter, times( 3 ) ).saveFile( endsWith( ".js" ), any( InputStream.class ) );
+  }
+
+  @Test
+  public void testChangedFileRebuildsItsPackages() {
+    IRWAccess mockWriter = mock( IRWAccess.class );
+    when( mockWriter.saveFile( anyString(), any( InputStream.class ) ) ).thenReturn( true );
+    when( mockFactory.getPluginSystemWriter( anyString() ) ).thenReturn( mockWriter );
+
+    addFileDependencies( new String[]{"path1", "path2"} );
+    DependenciesPackage.IDependencyInclusionFilter onlyFirst = new DependenciesPackage.IDependencyInclusionFilter() {
+      @Override
+      public boolean include( Dependency dependency ) {
+        return "path1".equals( dependency.toString() );
+      }
+    };
+    String all = jsDepPackage.getDependencies( true );
+    String first = jsDepPackage.getDependencies( true, onlyFirst );
+    verify( mockWriter, times( 2 ) ).saveFile( endsWith( ".js" ), any( InputStream.class ) );
+
+    // only the package with all files has file2
+    jsDepPackage.onFileChanged( jsDepPackage.getFileDependencies().get( "file2.js" ) );
+    verify( mockWriter, after( 500 ).times( 3 ) ).saveFile( endsWith( ".js" ), any( InputStream.class ) );
+
+    jsDepPackage.onFileChanged( jsDepPackage.getFileDependencies().get( "file1.js" ) );
+    verify( mockWriter, after( 500 ).times( 5 ) ).saveFile( endsWith( ".js" ), any( InputStream.class ) );
+
+    // rebuilt packages replaced the old ones, no build on request
+    assertEquals( all, jsDepPackage.getDependencies( true ) );
+    assertEquals( first, jsDepPackage.getDependencies( true, onlyFirst ) );
+    verify( mockWriter, times( 5 ) ).saveFile( endsWith( ".js" ), any( InputStream.class ) );
+  }
+
+  @Test
+  public void testEvictedFilteredPackageStillServed() {
+    final Map<String, String> saved = new HashMap<>();
+    IRWAccess mockWriter = mock( IRWAccess.class );
+    when( mockWriter.saveFile( anyString(), any( InputStream.class ) ) ).thenAnswer( new Answer<Boolean>() {
+      @Override
+      public Boolean answer( InvocationOnMock invocation ) throws Throwable {
+        saved.put( (String) invocation.getArguments()[0],
+          IOUtils.toString( (InputStream) invocation.getArguments()[1], "UTF-8" ) );
+        return true;
+      }
+    } );
+    when( mockFactory.getPluginSystemWriter( anyString() ) ).thenReturn( mockWriter );
+
+    for ( int i = 0; i < 7; i++ ) {
+      jsDepPackage.registerFileDependency( "file" + i + ".js", "v1", mockPathOrigin, "path" + i );
+    }
+    String first = jsDepPackage.getDependencies( true, selection( 1 ) );
+    Map<String, String> firstSaved = new HashMap<>( saved );
+    assertFalse( firstSaved.isEmpty() );
+
+    // one selection more than is cached, the first is evicted
+    for ( int selection = 2; selection <= 65; selection++ ) {
+      jsDepPackage.getDependencies( true, selection( selection ) );
+    }
+    verify( mockWriter, after( 200 ).never() ).deleteFile( anyString() );
+    for ( Map.Entry<String, String> file : firstSaved.entrySet() ) {
+      assertEquals( file.getValue(), saved.get( file.getKey() ) );
+    }
+    // built again at the same url
+    assertEquals( first, jsDepPackage.getDependencies( true, selection( 1 ) ) );
+  }
+
+  /**
+   * @return filter including the registered "path<i>" files whose bit is set
+   */
+  private static DependenciesPackage.IDependencyInclusionFilter selection( final int included ) {
+    return new DependenciesPackage.IDependencyInclusionFilter() {
+      @Override
+      public boolean include( Dependency dependency ) {
+        int index = Integer.parseInt( dependency.toString().substring( "path".length() ) );
+        return ( included & ( 1 << index ) ) != 0;
+      }
+    };
+  }
+
+  @Test
+  public void testDisposeStopsWatchingFiles() {
+    FileBasedResourceAccess mockReader = mock( FileBasedResourceAccess.class );
+    when( mockReader.watchFile( anyString(), any( FileChangeWatcher.Listener.class ) ) ).thenReturn( true );
+    when( mockPathOrigin.getReader( mockFactory ) ).thenReturn( mockReader );
+    PluginEnvironment mockEnvironment = mock( PluginEnvironment.class );
+    when( mockEnvironment.getContentAccessFactory() ).thenReturn( mockFactory );
+    PluginEnvironment.init( mockEnvironment );
+    try {
+      addFileDependencies( new String[]{"path1", "path2"} );
+      verify( mockReader ).watchFile( eq( "path1" ), any( FileChangeWatcher.Listener.class ) );
+
+      jsDepPackage.dispose();
+      verify( mockReader ).unwatchFile( eq( "path1" ), any( FileChangeWatcher.Listener.class ) );
+      verify( mockReader ).unwatchFile( eq( "path2" ), any( FileChangeWatcher.Listener.class ) );
+
+      // nor are files registered afterwards watched
+      jsDepPackage.registerFileDependency( "file3.js", "v3", mockPathOrigin, "path3" );
+      verify( mockReader ).unwatchFile( eq( "path3" ), any( FileChangeWatcher.Listener.class ) );
+    } finally {
+      PluginEnvironment.init( null );
+    }
+  }
+
+  @Test( timeout = 5000 )
+  public void testReadersDontWaitOnPackaging() throws Exception {
+    addFileDependencies( new String[]{"path1", "path2"} );
+    jsDepPackage.registerRawDependency( "raw.js", "v1", "var raw;" );
+
+    final CountDownLatch locked = new CountDownLatch( 1 );
+    final CountDownLatch done = new CountDownLatch( 1 );
+    Thread packaging = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        synchronized ( jsDepPackage.packagingLock ) {
+          locked.countDown();
+          try {
+            done.await();
+          } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    } );
+    packaging.start();
+    locked.await();
+    try {
+      String unpackaged = jsDepPackage.getDependencies( false );
+      assertTrue( unpackaged.contains( "path1" ) && unpackaged.contains( "path2" ) );
+      assertEquals( "var raw;\n", jsDepPackage.getRawDependencies( false ) );
+    } finally {
+      done.countDown();
+      packaging.join();
+    }
+  }
+
+  @Test
+  public void testRegistrationDoesNotChangeRegistrySnapshots() {
+    addFileDependencies( new String[]{"path1", "path2"} );
+    Map<String, FileDependency> snapshot = jsDepPackage.getFileDependencies();
+
+    jsDepPackage.registerFileDependency( "file3.js", "v3", mockPathOrigin, "path3" );
+    assertEquals( 2, snapshot.size() );
+    assertEquals( 3, jsDepPackage.getFileDependencies().size() );
+    // registration order is kept
+    assertEquals( Arrays.asList( "file1.js", "file2.js", "file3.js" ),
+      new ArrayList<>( jsDepPackage.getFileDependencies().keySet() ) );
+  }
+
   private static void addFileDependencies( String[] filePaths ) {
     String[] fileNames = new String[]{"file1", "file2"};
     String[] fileVersions = new String[]{"v1", "v2"};
@@ -0,0 +1,126 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.packager.dependencies;
+
+import org.junit.Before;
+import org.junit.Test;
+import pt.webdetails.cpf.Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class BundleBuilderTest {
+
+  private BundleBuilder builder;
+  private AtomicInteger minifyCount;
+  private BundleBuilder.FragmentMinifier upperCaseMinifier;
+
+  @Before
+  public void setUp() {
+    builder = new BundleBuilder( 2, 10 );
+    minifyCount = new AtomicInteger();
+    upperCaseMinifier = new BundleBuilder.FragmentMinifier() {
+      @Override
+      public String getFragmentKey( FileDependency dependency ) {
+        return null;
+      }
+
+      @Override
+      public byte[] minify( FileDependency dependency, byte[] contents ) {
+        minifyCount.incrementAndGet();
+        return Util.toString( contents ).toUpperCase().getBytes();
+      }
+    };
+  }
+
+  @Test
+  public void testBuildKeepsOrder() throws IOException {
+    InputStream bundle = builder.build( Arrays.<FileDependency>asList(
+      new ContentDependency( "a", "one;" ), new ContentDependency( "b", "two;" ),
+      new ContentDependency( "c", "three;" ) ),
+      upperCaseMinifier );
+    assertEquals( "ONE;TWO;THREE;", Util.toString( bundle ) );
+  }
+
+  @Test
+  public void testBuildSkipsUnreadableFiles() throws IOException {
+    InputStream bundle = builder.build( Arrays.<FileDependency>asList(
+      new ContentDependency( "a", "one;" ), new ContentDependency( "b", null ),
+      new ContentDependency( "c", "three;" ) ),
+      upperCaseMinifier );
+    assertEquals( "ONE;THREE;", Util.toString( bundle ) );
+  }
+
+  @Test
+  public void testOnlyChangedFragmentsAreMinified() throws IOException {
+    builder.build( Arrays.<FileDependency>asList(
+      new ContentDependency( "a", "one;" ), new ContentDependency( "b", "two;" ) ), upperCaseMinifier );
+    assertEquals( 2, minifyCount.get() );
+
+    InputStream bundle = builder.build( Arrays.<FileDependency>asList(
+      new ContentDependency( "a", "one;" ), new ContentDependency( "b", "changed;" ) ), upperCaseMinifier );
+    assertEquals( "ONE;CHANGED;", Util.toString( bundle ) );
+    assertEquals( 3, minifyCount.get() );
+
+    builder.clearCache();
+    builder.build( Arrays.<FileDependency>asList( new ContentDependency( "a", "one;" ) ), upperCaseMinifier );
+    assertEquals( 4, minifyCount.get() );
+  }
+
+  @Test
+  public void testSourceMapFollowsFragments() throws IOException {
+    SourceMapGenerator sourceMap = new SourceMapGenerator();
+    InputStream bundle = builder.build( Arrays.<FileDependency>asList(
+      new ContentDependency( "a.js", "var a = 1;" ), new ContentDependency( "b.js", "var b  =  2; // two" ) ),
+      new JsMinifiedDependency.JsFragmentMinifier(), sourceMap );
+    assertEquals( "\nvar a=1;\nvar b=2;", Util.toString( bundle ) );
+    assertEquals( "{\"version\":3,\"file\":\"all.js\",\"sources\":[\"/a.js\",\"/b.js\"],\"names\":[],"
+      + "\"mappings\":\";AAAA,KAAM,CAAE;ACAR,KAAO,CAAG\"}", sourceMap.toJson( "all.js" ) );
+  }
+
+  @Test
+  public void testSourceMapSkipsUnparsableFiles() throws IOException {
+    SourceMapGenerator sourceMap = new SourceMapGenerator();
+    InputStream bundle = builder.build( Arrays.<FileDependency>asList(
+      new ContentDependency( "a.js", "var a = 1;" ), new ContentDependency( "broken.js", "var s = 1;\nvar t = 'open" ),
+      new ContentDependency( "b.js", "var b  =  2; // two" ) ),
+      new JsMinifiedDependency.JsFragmentMinifier(), sourceMap );
+    assertEquals( "\nvar a=1;\nvar b=2;", Util.toString( bundle ) );
+    assertEquals( "{\"version\":3,\"file\":\"all.js\",\"sources\":[\"/a.js\",\"/b.js\"],\"names\":[],"
+      + "\"mappings\":\";AAAA,KAAM,CAAE;ACAR,KAAO,CAAG\"}", sourceMap.toJson( "all.js" ) );
+  }
+
+  static class ContentDependency extends FileDependency {
+
+    private String contents;
+
+    ContentDependency( String path, String contents ) {
+      super( null, null, path, null );
+      this.contents = contents;
+    }
+
+    @Override
+    public InputStream getFileInputStream() {
+      return contents == null ? null : Util.toInputStream( contents );
+    }
+
+    @Override
+    public String getUrlFilePath() {
+      return "/" + filePath;
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.packager.dependencies;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pt.webdetails.cpf.Util;
+import pt.webdetails.cpf.repository.impl.FileBasedResourceAccess;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChecksumServiceTest {
+
+  private File storeDir;
+  private FileBasedResourceAccess store;
+
+  @Before
+  public void setUp() throws IOException {
+    storeDir = Files.createTempDirectory( "cpf-checksums" ).toFile();
+    store = new FileBasedResourceAccess() {
+      @Override
+      protected File getFile( String path ) {
+        return new File( storeDir, path );
+      }
+    };
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory( storeDir );
+  }
+
+  @Test
+  public void testOnlyReadWhenModified() {
+    ChecksumService service = new ChecksumService( store );
+    TimestampedDependency dependency = new TimestampedDependency( "/a.js", "var a;", 1000 );
+
+    String md5 = service.getChecksum( dependency, 1000 );
+    assertEquals( md5, service.getChecksum( dependency, 1000 ) );
+    assertEquals( 1, dependency.reads );
+
+    dependency.contents = "var b;";
+    assertNotEquals( md5, service.getChecksum( dependency, 2000 ) );
+    assertEquals( 2, dependency.reads );
+  }
+
+  @Test
+  public void testUnknownTimestampIsAlwaysRead() {
+    ChecksumService service = new ChecksumService( store );
+    TimestampedDependency dependency = new TimestampedDependency( "/a.js", "var a;", 0 );
+
+    service.getChecksum( dependency, 0 );
+    service.getChecksum( dependency, 0 );
+    assertEquals( 2, dependency.reads );
+  }
+
+  @Test
+  public void testChecksumsArePersisted() {
+    ChecksumService service = new ChecksumService( store );
+    TimestampedDependency dependency = new TimestampedDependency( "/a.js", "var a;", 1000 );
+    String md5 = service.getChecksum( dependency, 1000 );
+    service.save();
+    assertTrue( store.fileExists( ChecksumService.STORE_FILE ) );
+
+    ChecksumService restarted = new ChecksumService( store );
+    TimestampedDependency sameFile = new TimestampedDependency( "/a.js", "var a;", 1000 );
+    assertEquals( md5, restarted.getChecksum( sameFile, 1000 ) );
+    assertEquals( 0, sameFile.reads );
+  }
+
+  @Test
+  public void testFileDependencyVersionFollowsTimestamp() {
+    TimestampedDependency dependency = new TimestampedDependency( "/a.js", "var a;", 1000 );
+    String version = dependency.getVersion();
+    assertEquals( version, dependency.getVersion() );
+    assertEquals( 1, dependency.reads );
+
+    dependency.contents = "var b;";
+    assertEquals( version, dependency.getVersion() );
+    dependency.lastModified = 2000;
+    assertNotEquals( version, dependency.getVersion() );
+    assertEquals( 2, dependency.reads );
+  }
+
+  static class TimestampedDependency extends FileDependency {
+
+    private String contents;
+    private long lastModified;
+    private int reads;
+
+    TimestampedDependency( String path, String contents, long lastModified ) {
+      super( null, null, path, null );
+      this.contents = contents;
+      this.lastModified = lastModified;
+    }
+
+    @Override
+    protected long getTimeStamp() {
+      return lastModified;
+    }
+
+    @Override
+    public String getUrlFilePath() {
+      return filePath;
+    }
+
+    @Override
+    public InputStream getFileInputStream() {
+      reads++;
+      return Util.toInputStream( contents );
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.packager.dependencies;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CssMinifierTest {
+
+  private CssMinifier minifier = new CssMinifier();
+
+  @Test
+  public void testWhitespaceAndComments() {
+    assertEquals( ".a .b,.c>.d{color:red;margin:0 auto}",
+      minifier.minify( "/* header */\n.a  .b ,\n.c > .d {\n  color : red;\n  margin: 0 auto;\n}\n", null ) );
+    assertEquals( "/*! license */.a{color:red}",
+      minifier.minify( "/*! license */\n.a { color: red; /* why */ }", null ) );
+  }
+
+  @Test
+  public void testSelectorSpacesAreKept() {
+    assertEquals( ".a :hover,a:not(.b) span{top:0}",
+      minifier.minify( ".a :hover, a:not( .b ) span { top: 0 }", null ) );
+  }
+
+  @Test
+  public void testCompaction() {
+    assertEquals( ".a{top:0;left:.5em;margin:-0.5em 1.05em}",
+      minifier.minify( ".a { top: 0;; left: 0.5em; margin: -0.5em 1.05em; }\n.empty { }\n.b {}", null ) );
+    assertEquals( ".a{width:calc(100% - 2px)!important}",
+      minifier.minify( ".a { width: calc( 100% - 2px ) !important; }", null ) );
+  }
+
+  @Test
+  public void testAtRules() {
+    assertEquals( "@import url(base.css);@media screen and (max-width:600px){.a{display:none}.b,.c{top:0}}",
+      minifier.minify( "@import url( base.css );\n@media screen and ( max-width : 600px ) {\n"
+        + "  .a { display: none; }\n  .b, .c { top: 0 }\n  .d { }\n}", null ) );
+    assertEquals( "@font-face{font-family:'A B';src:url(a.woff) format(\"woff\")}",
+      minifier.minify( "@font-face {\n  font-family: 'A B';\n  src: url(a.woff) format(\"woff\");\n}", null ) );
+  }
+
+  @Test
+  public void testStringsAreKept() {
+    assertEquals( ".a:after{content:\"  /* not a comment */ url(x.png) \"}",
+      minifier.minify( ".a:after { content: \"  /* not a comment */ url(x.png) \" }", "/loc/" ) );
+  }
+
+  @Test
+  public void testUrlRewriting() {
+    String location = "/pentaho/plugin/css/";
+    assertEquals( ".a{background:url(/pentaho/plugin/css/img/a.png)}",
+      minifier.minify( ".a { background: url( img/a.png ) }", location ) );
+    assertEquals( ".a{background:url('/pentaho/plugin/css/../img/a.png') no-repeat}",
+      minifier.minify( ".a { background: url('../img/a.png') no-repeat }", location ) );
+    assertEquals( ".a{background:url(\"/abs/a.png\")}",
+      minifier.minify( ".a { background: url(\"/abs/a.png\") }", location ) );
+    assertEquals( ".a{background:url(http://host/a.png),url(data:image/png;base64,AAA=)}",
+      minifier.minify( ".a { background: url(http://host/a.png), url(data:image/png;base64,AAA=) }", location ) );
+    assertEquals(
+      ".a{filter:progid:DXImageTransform.Microsoft.AlphaImageLoader(src='/pentaho/plugin/css/../img/a.png')}",
+      minifier.minify( ".a { filter: progid:DXImageTransform.Microsoft.AlphaImageLoader(src='img/a.png') }",
+        location ) );
+  }
+
+  @Test
+  public void testQuotedUrls() {
+    assertEquals( ".a{background:url(\"/loc/a(1).png\")}.b{top:0}",
+      minifier.minify( ".a { background: url( \"a(1).png\" ) }\n.b { top: 0 }", "/loc/" ) );
+    assertEquals( ".a{background:url('/loc/a\"b.png')}.b{top:0}",
+      minifier.minify( ".a { background: url('a\"b.png') }\n.b { top: 0 }", "/loc/" ) );
+  }
+
+  @Test
+  public void testUnterminatedUrl() {
+    assertEquals( ".a{background:url(a.png}",
+      minifier.minify( ".a { background: url( a.png }", "/loc/" ) );
+    assertEquals( ".a{background:url(\"a.png) }",
+      minifier.minify( ".a { background: url( \"a.png) }", "/loc/" ) );
+  }
+
+  @Test
+  public void testSameUrlsAsReplacer() {
+    String css = ".a{background:url(img/a.png)}.b{background:url('/b.png')}.c{background:url(\"https://x/c.png\")}";
+    assertEquals( new CssUrlReplacer().processContents( css, "/loc/" ), minifier.minify( css, "/loc/" ) );
+  }
+}
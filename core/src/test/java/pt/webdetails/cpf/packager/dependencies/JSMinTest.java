@@ -0,0 +1,110 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.packager.dependencies;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JSMinTest {
+
+  @Test
+  public void testMinifyStream() throws Exception {
+    byte[] source = readResource( "/jsmin/sample.js" );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JSMin( new ByteArrayInputStream( source ), out ).jsmin();
+    assertArrayEquals( readResource( "/jsmin/sample.min.js" ), out.toByteArray() );
+  }
+
+  @Test
+  public void testMinifyBytes() throws Exception {
+    byte[] source = readResource( "/jsmin/sample.js" );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JSMin( source, out ).jsmin();
+    assertArrayEquals( readResource( "/jsmin/sample.min.js" ), out.toByteArray() );
+  }
+
+  @Test
+  public void testMinifyShortReads() throws Exception {
+    // lookahead must work across buffer refills
+    byte[] source = readResource( "/jsmin/sample.js" );
+    InputStream oneByteAtATime = new FilterInputStream( new ByteArrayInputStream( source ) ) {
+      @Override
+      public int read( byte[] b, int off, int len ) throws IOException {
+        return super.read( b, off, Math.min( len, 1 ) );
+      }
+    };
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JSMin( oneByteAtATime, out ).jsmin();
+    assertArrayEquals( readResource( "/jsmin/sample.min.js" ), out.toByteArray() );
+  }
+
+  @Test
+  public void testUnterminatedComment() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      new JSMin( "var a = 1; /* never closed".getBytes( "UTF-8" ), out ).jsmin();
+      fail( "unterminated comment should not parse" );
+    } catch ( ParseException e ) {
+      assertEquals( "Comment not terminated.", e.getMessage() );
+    }
+    // output up to the error is still written
+    assertEquals( "\nvar a=1", out.toString( "UTF-8" ) );
+  }
+
+  @Test
+  public void testMappingsPointAtSource() throws Exception {
+    byte[] source = readResource( "/jsmin/sample.js" );
+    final String[] sourceLines = new String( source, "UTF-8" ).split( "\r\n|\r|\n", -1 );
+    final List<int[]> mappings = new ArrayList<>();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JSMin jsMin = new JSMin( source, out );
+    jsMin.setMappingListener( new JSMin.MappingListener() {
+      @Override
+      public void mapping( int generatedLine, int generatedColumn, int sourceLine, int sourceColumn ) {
+        mappings.add( new int[]{ generatedLine, generatedColumn, sourceLine, sourceColumn } );
+      }
+    } );
+    jsMin.jsmin();
+    assertArrayEquals( readResource( "/jsmin/sample.min.js" ), out.toByteArray() );
+
+    String[] outputLines = out.toString( "UTF-8" ).split( "\n", -1 );
+    assertTrue( mappings.size() > outputLines.length );
+    for ( int[] mapping : mappings ) {
+      char expected = sourceLines[ mapping[ 2 ] ].charAt( mapping[ 3 ] );
+      assertEquals( expected, outputLines[ mapping[ 0 ] ].charAt( mapping[ 1 ] ) );
+    }
+  }
+
+  private byte[] readResource( String name ) throws IOException {
+    InputStream in = getClass().getResourceAsStream( name );
+    try {
+      return IOUtils.toByteArray( in );
+    } finally {
+      IOUtils.closeQuietly( in );
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.packager.dependencies;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PrecompressedEncodingTest {
+
+  private static final Set<PrecompressedEncoding> ALL = EnumSet.allOf( PrecompressedEncoding.class );
+
+  @Test
+  public void testSelect() {
+    assertEquals( PrecompressedEncoding.GZIP, PrecompressedEncoding.select( "gzip, deflate, br", ALL ) );
+    assertEquals( PrecompressedEncoding.GZIP, PrecompressedEncoding.select( "deflate;q=1.0, GZIP;q=0.5", ALL ) );
+    assertEquals( PrecompressedEncoding.GZIP, PrecompressedEncoding.select( "*", ALL ) );
+  }
+
+  @Test
+  public void testSelectNone() {
+    assertNull( PrecompressedEncoding.select( null, ALL ) );
+    assertNull( PrecompressedEncoding.select( "identity", ALL ) );
+    assertNull( PrecompressedEncoding.select( "gzip;q=0", ALL ) );
+    assertNull( PrecompressedEncoding.select( "*;q=0.8, gzip;q=0", ALL ) );
+    assertNull( PrecompressedEncoding.select( "gzip", Collections.<PrecompressedEncoding>emptySet() ) );
+  }
+
+  @Test
+  public void testGzip() throws IOException {
+    StringBuilder js = new StringBuilder();
+    for ( int i = 0; i < 100; i++ ) {
+      js.append( "var a" ).append( i ).append( "=function(){return " ).append( i ).append( "};" );
+    }
+    byte[] contents = js.toString().getBytes( "UTF-8" );
+    byte[] compressed = PrecompressedEncoding.GZIP.compress( contents );
+    assertTrue( compressed.length < contents.length );
+    assertArrayEquals( contents, IOUtils.toByteArray( new GZIPInputStream( new ByteArrayInputStream( compressed ) ) ) );
+  }
+}
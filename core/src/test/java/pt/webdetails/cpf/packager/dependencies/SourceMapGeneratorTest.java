@@ -0,0 +1,42 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.packager.dependencies;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SourceMapGeneratorTest {
+
+  @Test
+  public void testMappings() {
+    SourceMapGenerator sourceMap = new SourceMapGenerator();
+    int a = sourceMap.addSource( "/js/a.js" );
+    int b = sourceMap.addSource( "/js/b \"quoted\".js" );
+    sourceMap.addMapping( 0, 0, a, 0, 0 );
+    sourceMap.addMapping( 0, 4, a, 0, 4 );
+    sourceMap.addMapping( 1, 0, a, 1, 0 );
+    sourceMap.addMapping( 1, 20, b, 0, 16 );
+    sourceMap.addMapping( 3, 2, b, 2, 0 );
+    assertEquals( "{\"version\":3,\"file\":\"all.js\",\"sources\":[\"/js/a.js\",\"/js/b \\\"quoted\\\".js\"],"
+      + "\"names\":[],\"mappings\":\"AAAA,IAAI;AACJ,oBCDgB;;EAEhB\"}", sourceMap.toJson( "all.js" ) );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testMappingsOutOfOrder() {
+    SourceMapGenerator sourceMap = new SourceMapGenerator();
+    int a = sourceMap.addSource( "/js/a.js" );
+    sourceMap.addMapping( 1, 0, a, 0, 0 );
+    sourceMap.addMapping( 0, 4, a, 0, 4 );
+  }
+}
@@ -0,0 +1,86 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileChangeWatcherTest {
+
+  // some platforms poll for changes instead of being notified
+  private static final long TIMEOUT_SECONDS = 30;
+
+  private File dir;
+  private FileBasedResourceAccess access;
+  private BlockingQueue<File> changes;
+  private FileChangeWatcher.Listener listener;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory( "cpf-watch" ).toFile();
+    access = new FileBasedResourceAccess() {
+      @Override
+      protected File getFile( String path ) {
+        return new File( dir, path );
+      }
+    };
+    changes = new LinkedBlockingQueue<>();
+    listener = new FileChangeWatcher.Listener() {
+      @Override
+      public void fileChanged( File file ) {
+        changes.add( file );
+      }
+    };
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    access.unwatchFile( "a.js", listener );
+    FileUtils.deleteDirectory( dir );
+  }
+
+  @Test
+  public void testModifiedFileIsNotified() throws Exception {
+    access.saveFile( "a.js", "var a;" );
+    access.saveFile( "b.js", "var b;" );
+    assertTrue( access.watchFile( "a.js", listener ) );
+
+    access.saveFile( "b.js", "var b = 1;" );
+    access.saveFile( "a.js", "var a = 1;" );
+    File changed = changes.poll( TIMEOUT_SECONDS, TimeUnit.SECONDS );
+    assertEquals( new File( dir, "a.js" ).getCanonicalFile(), changed.getCanonicalFile() );
+  }
+
+  @Test
+  public void testUnwatchedFileIsNotNotified() throws Exception {
+    access.saveFile( "a.js", "var a;" );
+    assertTrue( access.watchFile( "a.js", listener ) );
+    access.unwatchFile( "a.js", listener );
+
+    access.saveFile( "a.js", "var a = 1;" );
+    assertNull( changes.poll( 1, TimeUnit.SECONDS ) );
+  }
+}
@@ -0,0 +1,118 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class ContentMirrorTest {
+
+  private File root;
+  private File dir;
+  private ContentMirror mirror;
+
+  @Before
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory( "cpf-mirror" ).toFile();
+    mirror = new ContentMirror( root, 10 );
+    dir = mirror.getDirectory();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory( root );
+  }
+
+  @Test
+  public void testServedForSameValidator() throws IOException {
+    assertEquals( "abc", read( mirror.put( "/public/a.txt", "1", stream( "abc" ) ) ) );
+
+    assertEquals( "abc", read( mirror.get( "/public/a.txt", "1" ) ) );
+    assertNull( mirror.get( "/public/a.txt", "2" ) );
+    assertNull( mirror.get( "/public/b.txt", "1" ) );
+  }
+
+  @Test
+  public void testSameContentsStoredOnce() throws IOException {
+    read( mirror.put( "/public/a.txt", "1", stream( "abc" ) ) );
+    read( mirror.put( "/public/b.txt", "1", stream( "abc" ) ) );
+    assertEquals( 3, mirror.size() );
+    assertEquals( 1, dir.list().length );
+
+    mirror.invalidate( "/public/a.txt" );
+    assertEquals( "abc", read( mirror.get( "/public/b.txt", "1" ) ) );
+    mirror.invalidate( "/public/b.txt" );
+    assertEquals( 0, mirror.size() );
+    assertEquals( 0, dir.list().length );
+  }
+
+  @Test
+  public void testLeastRecentlyUsedAreDropped() throws IOException {
+    read( mirror.put( "/a", "1", stream( "aaaa" ) ) );
+    read( mirror.put( "/b", "1", stream( "bbbb" ) ) );
+    read( mirror.get( "/a", "1" ) );
+    read( mirror.put( "/c", "1", stream( "cccc" ) ) );
+
+    assertEquals( 8, mirror.size() );
+    assertNull( mirror.get( "/b", "1" ) );
+    assertEquals( "aaaa", read( mirror.get( "/a", "1" ) ) );
+  }
+
+  @Test
+  public void testInvalidateTree() throws IOException {
+    read( mirror.put( "/public/dir/a", "1", stream( "a" ) ) );
+    read( mirror.put( "/public/dir2", "1", stream( "b" ) ) );
+
+    mirror.invalidateTree( "/public/dir" );
+    assertNull( mirror.get( "/public/dir/a", "1" ) );
+    assertEquals( "b", read( mirror.get( "/public/dir2", "1" ) ) );
+  }
+
+  @Test
+  public void testMirrorsDontShareFiles() throws IOException {
+    read( mirror.put( "/public/a.txt", "1", stream( "abc" ) ) );
+
+    // another mirror of the same server, e.g. in another plugin
+    ContentMirror other = new ContentMirror( root, 10 );
+    assertNotEquals( dir, other.getDirectory() );
+    read( other.put( "/public/a.txt", "1", stream( "abc" ) ) );
+    other.invalidate( "/public/a.txt" );
+
+    assertEquals( "abc", read( mirror.get( "/public/a.txt", "1" ) ) );
+  }
+
+  private static InputStream stream( String contents ) {
+    return new ByteArrayInputStream( contents.getBytes() );
+  }
+
+  private static String read( InputStream input ) throws IOException {
+    try {
+      return IOUtils.toString( input );
+    } finally {
+      input.close();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataCacheTest {
+
+  private static final long TTL = 1000;
+
+  private long now;
+  private MetadataCache<String> cache;
+
+  @Before
+  public void setUp() {
+    now = 0;
+    cache = new MetadataCache<String>( 3, TTL ) {
+      @Override
+      protected long currentTimeMillis() {
+        return now;
+      }
+    };
+  }
+
+  @Test
+  public void testEntriesExpire() {
+    cache.put( "/public/a.txt", "a", null, null );
+    assertEquals( "a", cache.getFresh( "/public/a.txt" ) );
+
+    now += TTL;
+    assertNull( cache.getFresh( "/public/a.txt" ) );
+    // stale entries are kept for revalidation
+    assertEquals( "a", cache.get( "/public/a.txt" ).getValue() );
+  }
+
+  @Test
+  public void testRevalidation() {
+    MetadataCache.Entry<String> entry = cache.put( "/public/a.txt", "a", "\"1\"", null );
+    assertTrue( entry.canRevalidate() );
+    assertFalse( cache.put( "/public/b.txt", "b", null, null ).canRevalidate() );
+
+    now += TTL;
+    assertFalse( cache.isFresh( entry ) );
+    cache.revalidated( entry );
+    assertTrue( cache.isFresh( entry ) );
+    assertSame( entry, cache.get( "/public/a.txt" ) );
+  }
+
+  @Test
+  public void testLeastRecentlyUsedAreDropped() {
+    cache.put( "/a", "a", null, null );
+    cache.put( "/b", "b", null, null );
+    cache.put( "/c", "c", null, null );
+    cache.get( "/a" );
+    cache.put( "/d", "d", null, null );
+
+    assertEquals( 3, cache.size() );
+    assertNull( cache.get( "/b" ) );
+    assertEquals( "a", cache.getFresh( "/a" ) );
+  }
+
+  @Test
+  public void testInvalidateTree() {
+    cache.put( "/public/dir", "dir", null, null );
+    cache.put( "/public/dir/a.txt", "a", null, null );
+    cache.put( "/public/dir2", "dir2", null, null );
+
+    cache.invalidateTree( "/public/dir" );
+    assertNull( cache.get( "/public/dir" ) );
+    assertNull( cache.get( "/public/dir/a.txt" ) );
+    assertEquals( "dir2", cache.getFresh( "/public/dir2" ) );
+  }
+}
@@ -0,0 +1,79 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MissingPathCacheTest {
+
+  private long now;
+  private MissingPathCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new MissingPathCache( 3, 100 ) {
+      @Override
+      protected long currentTimeMillis() {
+        return now;
+      }
+    };
+  }
+
+  @Test
+  public void testExpires() {
+    cache.add( "/public/a.properties" );
+    assertTrue( cache.isMissing( "/public/a.properties" ) );
+    assertFalse( cache.isMissing( "/public/b.properties" ) );
+
+    now += 100;
+    assertFalse( cache.isMissing( "/public/a.properties" ) );
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test
+  public void testInvalidatedByCreation() {
+    cache.add( "/public/a" );
+    cache.add( "/public/a/b/c.css" );
+    cache.add( "/public/ab.css" );
+
+    // saving a file under a missing folder creates the folder
+    cache.invalidate( "/public/a/b/d.css" );
+    assertFalse( cache.isMissing( "/public/a" ) );
+    assertTrue( cache.isMissing( "/public/a/b/c.css" ) );
+
+    cache.invalidate( "/public/a" );
+    assertFalse( cache.isMissing( "/public/a/b/c.css" ) );
+    assertTrue( "not under the folder", cache.isMissing( "/public/ab.css" ) );
+  }
+
+  @Test
+  public void testBounded() {
+    cache.add( "/a" );
+    now += 50;
+    cache.add( "/b" );
+    cache.add( "/c" );
+    now += 50;
+    // expired entries go first
+    cache.add( "/d" );
+    assertEquals( 3, cache.size() );
+    assertFalse( cache.isMissing( "/a" ) );
+
+    cache.add( "/e" );
+    assertEquals( 3, cache.size() );
+  }
+}
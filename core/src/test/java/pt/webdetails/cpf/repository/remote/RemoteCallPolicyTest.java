@@ -0,0 +1,174 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RemoteCallPolicyTest {
+
+  private long now;
+  private CircuitBreaker breaker;
+  private RemoteCallPolicy policy;
+
+  @Before
+  public void setUp() {
+    breaker = new CircuitBreaker( 3, 1000 ) {
+      @Override
+      protected long currentTimeMillis() {
+        return now;
+      }
+    };
+    policy = new RemoteCallPolicy( breaker, 2, 10 ) {
+      @Override
+      protected void sleep( long millis ) {
+        now += millis;
+      }
+
+      @Override
+      protected long currentTimeMillis() {
+        return now;
+      }
+    };
+  }
+
+  @Test
+  public void testReadsAreRetried() throws IOException {
+    FailingCall call = new FailingCall( 2 );
+    assertEquals( "ok", policy.read( call, 10000 ) );
+    assertEquals( 3, call.attempts );
+    assertEquals( 2, policy.getRetries() );
+    assertEquals( CircuitBreaker.State.CLOSED, breaker.getState() );
+  }
+
+  @Test
+  public void testRetriesAreBounded() {
+    FailingCall call = new FailingCall( 5 );
+    try {
+      policy.read( call, 10000 );
+      fail();
+    } catch ( IOException e ) {
+      assertEquals( 3, call.attempts );
+    }
+
+    // no time left for a retry
+    breaker.onSuccess();
+    call = new FailingCall( 5 );
+    try {
+      policy.read( call, 0 );
+      fail();
+    } catch ( IOException e ) {
+      assertEquals( 1, call.attempts );
+    }
+  }
+
+  @Test
+  public void testWritesAreNotRetried() {
+    FailingCall call = new FailingCall( 1 );
+    try {
+      policy.write( call );
+      fail();
+    } catch ( IOException e ) {
+      assertEquals( 1, call.attempts );
+    }
+  }
+
+  @Test
+  public void testOpenCircuitFailsFast() throws IOException {
+    try {
+      policy.read( new FailingCall( 5 ), 10000 );
+      fail();
+    } catch ( IOException e ) {
+      // third failure opens it
+    }
+    assertTrue( policy.isOpen() );
+    assertEquals( 1, breaker.getTrips() );
+
+    FailingCall call = new FailingCall( 0 );
+    try {
+      policy.read( call, 10000 );
+      fail();
+    } catch ( RemoteUnavailableException e ) {
+      assertEquals( 0, call.attempts );
+      assertEquals( 1, policy.getRejected() );
+    }
+
+    // a single trial call once the circuit has been open for a while
+    now += 1000;
+    assertEquals( "ok", policy.read( call, 10000 ) );
+    assertFalse( policy.isOpen() );
+  }
+
+  @Test
+  public void testFailedTrialReopens() {
+    for ( int i = 0; i < 3; i++ ) {
+      breaker.onFailure();
+    }
+    now += 1000;
+    assertTrue( breaker.allowRequest() );
+    assertFalse( "only one trial call", breaker.allowRequest() );
+    breaker.onFailure();
+    assertEquals( CircuitBreaker.State.OPEN, breaker.getState() );
+    assertEquals( 2, breaker.getTrips() );
+  }
+
+  @Test
+  public void testErrorInTrialReopens() throws IOException {
+    for ( int i = 0; i < 3; i++ ) {
+      breaker.onFailure();
+    }
+    now += 1000;
+    try {
+      policy.write( new Callable<String>() {
+        @Override
+        public String call() {
+          throw new StackOverflowError();
+        }
+      } );
+      fail();
+    } catch ( StackOverflowError e ) {
+      // not retried
+    }
+    assertEquals( CircuitBreaker.State.OPEN, breaker.getState() );
+
+    // and there's another trial later
+    now += 1000;
+    assertEquals( "ok", policy.read( new FailingCall( 0 ), 10000 ) );
+    assertEquals( CircuitBreaker.State.CLOSED, breaker.getState() );
+  }
+
+  private static class FailingCall implements Callable<String> {
+    private final int failures;
+    private int attempts;
+
+    FailingCall( int failures ) {
+      this.failures = failures;
+    }
+
+    @Override
+    public String call() throws IOException {
+      if ( attempts++ < failures ) {
+        throw new IOException( "failure " + attempts );
+      }
+      return "ok";
+    }
+  }
+}
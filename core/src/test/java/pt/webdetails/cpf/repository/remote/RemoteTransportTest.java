@@ -0,0 +1,99 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RemoteTransportTest {
+
+  private RemoteTransport transport;
+
+  @Before
+  public void setUp() {
+    transport = new RemoteTransport( "admin", "password", 2 );
+  }
+
+  @After
+  public void tearDown() {
+    transport.shutdown();
+  }
+
+  @Test
+  public void testAuthorization() {
+    assertEquals( "Basic YWRtaW46cGFzc3dvcmQ=", transport.getAuthorization() );
+  }
+
+  @Test
+  public void testSubmit() throws Exception {
+    CompletableFuture<String> result = transport.submit( new Callable<String>() {
+      @Override
+      public String call() {
+        return "done";
+      }
+    } );
+    assertEquals( "done", result.get( 5, TimeUnit.SECONDS ) );
+
+    CompletableFuture<String> failed = transport.submit( new Callable<String>() {
+      @Override
+      public String call() throws IOException {
+        throw new IOException( "unreachable" );
+      }
+    } );
+    try {
+      failed.get( 5, TimeUnit.SECONDS );
+      fail();
+    } catch ( ExecutionException e ) {
+      assertTrue( e.getCause() instanceof IOException );
+    }
+  }
+
+  @Test( timeout = 5000 )
+  public void testConcurrencyIsBounded() throws Exception {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch( 1 );
+    CompletableFuture<?>[] calls = new CompletableFuture<?>[ 6 ];
+    for ( int i = 0; i < calls.length; i++ ) {
+      calls[ i ] = transport.submit( new Callable<Void>() {
+        @Override
+        public Void call() throws InterruptedException {
+          int now = running.incrementAndGet();
+          maxRunning.accumulateAndGet( now, Math::max );
+          release.await();
+          running.decrementAndGet();
+          return null;
+        }
+      } );
+    }
+    while ( running.get() < 2 ) {
+      Thread.sleep( 10 );
+    }
+    release.countDown();
+    CompletableFuture.allOf( calls ).get();
+    assertEquals( 2, maxRunning.get() );
+  }
+}
@@ -0,0 +1,158 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+  private static final int CALLERS = 5;
+
+  private SingleFlight<String, String> flights;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    flights = new SingleFlight<>();
+    executor = Executors.newFixedThreadPool( CALLERS );
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test( timeout = 5000 )
+  public void testConcurrentCallsShared() throws Exception {
+    BlockingCall call = new BlockingCall( null );
+    List<Future<String>> results = runConcurrently( "/public/a.txt", call );
+
+    call.release.countDown();
+    for ( Future<String> result : results ) {
+      assertEquals( "result 1", result.get() );
+    }
+    assertEquals( 1, call.calls.get() );
+    assertEquals( CALLERS - 1, flights.getShared() );
+    assertEquals( 0, flights.size() );
+
+    // completed calls are not reused
+    assertEquals( "result 2", flights.run( "/public/a.txt", call ) );
+  }
+
+  @Test( timeout = 5000 )
+  public void testFailureShared() throws Exception {
+    BlockingCall call = new BlockingCall( new IOException( "unreachable" ) );
+    List<Future<String>> results = runConcurrently( "/public/a.txt", call );
+
+    call.release.countDown();
+    for ( Future<String> result : results ) {
+      try {
+        result.get();
+        fail();
+      } catch ( ExecutionException e ) {
+        assertTrue( e.getCause() instanceof IOException );
+      }
+    }
+    assertEquals( 1, call.calls.get() );
+  }
+
+  @Test( timeout = 5000 )
+  public void testErrorShared() throws Exception {
+    BlockingCall call = new BlockingCall( new AssertionError( "broken" ) );
+    List<Future<String>> results = runConcurrently( "/public/a.txt", call );
+
+    call.release.countDown();
+    for ( Future<String> result : results ) {
+      try {
+        result.get();
+        fail();
+      } catch ( ExecutionException e ) {
+        assertTrue( e.getCause() instanceof AssertionError );
+      }
+    }
+    assertEquals( 0, flights.size() );
+  }
+
+  @Test
+  public void testKeysNotShared() throws IOException {
+    BlockingCall call = new BlockingCall( null );
+    call.release.countDown();
+    assertEquals( "result 1", flights.run( "/public/a.txt", call ) );
+    assertEquals( "result 2", flights.run( "/public/b.txt", call ) );
+    assertEquals( 0, flights.getShared() );
+  }
+
+  /**
+   * Starts the callers once the first one is in flight, and waits for all of them to join it.
+   */
+  private List<Future<String>> runConcurrently( final String key, final BlockingCall call ) throws Exception {
+    List<Future<String>> results = new ArrayList<>();
+    for ( int i = 0; i < CALLERS; i++ ) {
+      results.add( executor.submit( new Callable<String>() {
+        @Override
+        public String call() throws IOException {
+          return flights.run( key, call );
+        }
+      } ) );
+      if ( i == 0 ) {
+        call.started.await();
+      }
+    }
+    while ( flights.getShared() < CALLERS - 1 ) {
+      Thread.sleep( 1 );
+    }
+    return results;
+  }
+
+  private static class BlockingCall implements Callable<String> {
+    private final Throwable failure;
+    private final CountDownLatch started = new CountDownLatch( 1 );
+    private final CountDownLatch release = new CountDownLatch( 1 );
+    private final AtomicInteger calls = new AtomicInteger();
+
+    BlockingCall( Throwable failure ) {
+      this.failure = failure;
+    }
+
+    @Override
+    public String call() throws Exception {
+      int call = calls.incrementAndGet();
+      started.countDown();
+      release.await();
+      if ( failure instanceof Error ) {
+        throw (Error) failure;
+      }
+      if ( failure != null ) {
+        throw (Exception) failure;
+      }
+      return "result " + call;
+    }
+  }
+}
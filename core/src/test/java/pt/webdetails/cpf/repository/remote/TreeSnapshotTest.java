@@ -0,0 +1,98 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.remote;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TreeSnapshotTest {
+
+  private TreeSnapshot<String> snapshot;
+
+  @Before
+  public void setUp() {
+    // two levels below /public
+    snapshot = new TreeSnapshot<>( "/public/", 2, true );
+    for ( String path : new String[]{ "/public", "/public/a", "/public/a/a.txt", "/public/b.txt" } ) {
+      snapshot.add( path, path );
+    }
+  }
+
+  @Test
+  public void testCovers() {
+    assertTrue( snapshot.covers( "/public" ) );
+    assertTrue( snapshot.covers( "/public/a/missing.txt" ) );
+    assertFalse( snapshot.covers( "/public/a/b/missing.txt" ) );
+    assertFalse( snapshot.covers( "/publicity" ) );
+
+    assertTrue( snapshot.covers( "/public/", 2 ) );
+    assertTrue( snapshot.covers( "/public/a", 1 ) );
+    assertFalse( snapshot.covers( "/public/a", 2 ) );
+    assertFalse( snapshot.covers( "/public", -1 ) );
+    assertTrue( new TreeSnapshot<String>( "/", -1, false ).covers( "/public", -1 ) );
+  }
+
+  @Test
+  public void testList() {
+    assertEquals( Arrays.asList( "/public", "/public/a", "/public/a/a.txt", "/public/b.txt" ),
+      snapshot.list( "/public", -1 ) );
+    assertEquals( Arrays.asList( "/public", "/public/a", "/public/b.txt" ), snapshot.list( "/public", 1 ) );
+    assertEquals( Arrays.asList( "/public/a", "/public/a/a.txt" ), snapshot.list( "/public/a/", 1 ) );
+    assertEquals( "/public/b.txt", snapshot.get( "/public/b.txt" ) );
+  }
+
+  @Test
+  public void testOverlaps() {
+    assertTrue( snapshot.overlaps( "/public/a/new.txt" ) );
+    assertTrue( snapshot.overlaps( "/" ) );
+    assertFalse( snapshot.overlaps( "/home/admin" ) );
+  }
+
+  @Test
+  public void testCache() {
+    final long[] now = { 0 };
+    TreeSnapshotCache<String> cache = new TreeSnapshotCache<String>( 4, 1000 ) {
+      @Override
+      protected long currentTimeMillis() {
+        return now[ 0 ];
+      }
+    };
+    cache.put( snapshot );
+    TreeSnapshot<String> visible = new TreeSnapshot<>( "/home", 1, false );
+    visible.add( "/home/admin", "/home/admin" );
+    cache.put( visible );
+
+    assertSame( snapshot, cache.getListing( "/public/a", 1, true ) );
+    assertNull( cache.getListing( "/home", 1, true ) );
+    assertSame( visible, cache.getListing( "/home", 1, false ) );
+
+    // hidden files may be missing from the snapshot
+    assertSame( snapshot, cache.getCovering( "/public/missing.txt" ) );
+    assertNull( cache.getCovering( "/home/missing" ) );
+    assertSame( visible, cache.getCovering( "/home/admin" ) );
+
+    cache.invalidate( "/public/a/new.txt" );
+    assertNull( cache.getCovering( "/public/b.txt" ) );
+
+    now[ 0 ] += 1000;
+    assertNull( cache.getCovering( "/home/admin" ) );
+  }
+}
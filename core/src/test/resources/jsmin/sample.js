@@ -0,0 +1,27 @@
+/*
+ * Sample used to check the minifier output.
+ */
+var Dashboard = ( function( $, _ ) {
+  "use strict";
+
+  // defaults
+  var defaults = {
+    title: "Olá \"mundo\"",
+    path: '/public/plugin-samples/',
+    pattern: /^[a-z]+\/\d*$/i,
+    count: 10
+  };
+
+	function render( target, options ) {
+    var opts = $.extend( {}, defaults, options ),
+        ratio = opts.count / 2;
+    if ( !opts.title ) { return; }
+    target.html( _.escape( opts.title ) ); /* inline comment */
+    return ratio
+  }
+
+  return {
+    render: render,
+    isPath: function( value ) { return defaults.pattern.test( value ) || /\/$/.test( value ); }
+  };
+}( jQuery, _ ) );
@@ -0,0 +1,4 @@
+
+var Dashboard=(function($,_){"use strict";var defaults={title:"Olá \"mundo\"",path:'/public/plugin-samples/',pattern:/^[a-z]+\/\d*$/i,count:10};function render(target,options){var opts=$.extend({},defaults,options),ratio=opts.count/2;if(!opts.title){return;}
+target.html(_.escape(opts.title));return ratio}
+return{render:render,isPath:function(value){return defaults.pattern.test(value)||/\/$/.test(value);}};}(jQuery,_));
\ No newline at end of file
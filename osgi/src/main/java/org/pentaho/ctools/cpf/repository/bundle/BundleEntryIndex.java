@@ -0,0 +1,162 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.ctools.cpf.repository.bundle;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.osgi.framework.Bundle;
+
+/**
+ * Class {@code BundleEntryIndex} is a tree of the entries of a bundle, read once, as they don't change while the bundle
+ * isn't updated. Entries are also kept by path, so looking one up doesn't go through the framework.
+ * Folders without an entry of their own, as in jars built without folder entries, are added for the files in them.
+ */
+final class BundleEntryIndex {
+  private static final String PATH_SEPARATOR = "/";
+
+  private final Bundle bundle;
+  private final long lastModified;
+  private final Map<String, Node> nodes = new HashMap<>();
+  private final Node root;
+
+  BundleEntryIndex( Bundle bundle ) {
+    this.bundle = bundle;
+    this.lastModified = bundle.getLastModified();
+    this.root = new Node( "", true );
+    nodes.put( root.path, root );
+
+    Enumeration<URL> entries = bundle.findEntries( PATH_SEPARATOR, null, true );
+    while ( entries != null && entries.hasMoreElements() ) {
+      URL url = entries.nextElement();
+      add( normalize( url.getPath() ), url, url.getPath().endsWith( PATH_SEPARATOR ) );
+    }
+  }
+
+  /**
+   * @return if the index was read from the bundle as it is now
+   */
+  boolean isCurrent( Bundle bundle ) {
+    return this.bundle == bundle && lastModified == bundle.getLastModified();
+  }
+
+  /**
+   * @return the entry URL, {@code null} if there is no such entry
+   */
+  URL getEntry( String path ) {
+    Node node = nodes.get( normalize( path ) );
+    if ( node == null ) {
+      return null;
+    }
+    return node.url != null ? node.url : bundle.getEntry( path );
+  }
+
+  boolean exists( String path ) {
+    return nodes.containsKey( normalize( path ) );
+  }
+
+  /**
+   * @param maxDepth levels to list below the folder, all if negative; its contents are always listed
+   * @return the entries under the folder, a folder before its contents; empty if there is no such folder
+   */
+  List<URL> list( String path, int maxDepth, boolean includeDirs ) {
+    List<URL> result = new ArrayList<>();
+    Node node = nodes.get( normalize( path ) );
+    if ( node != null && node.directory ) {
+      list( node, maxDepth < 0 ? Integer.MAX_VALUE : Math.max( maxDepth, 1 ), includeDirs, result );
+    }
+    return result;
+  }
+
+  private void list( Node folder, int depth, boolean includeDirs, List<URL> result ) {
+    for ( Node child : folder.children.values() ) {
+      if ( child.directory ) {
+        if ( isBundleFolder( child ) ) {
+          continue;
+        }
+        if ( includeDirs && child.url != null ) {
+          result.add( child.url );
+        }
+        if ( depth > 1 ) {
+          list( child, depth - 1, includeDirs, result );
+        }
+      } else {
+        result.add( child.url );
+      }
+    }
+  }
+
+  private static boolean isBundleFolder( Node node ) {
+    String name = node.path.substring( node.path.lastIndexOf( PATH_SEPARATOR ) + 1 );
+    return name.equals( "META-INF" ) || name.equals( "OSGI-INF" );
+  }
+
+  private Node add( String path, URL url, boolean directory ) {
+    Node node = nodes.get( path );
+    if ( node == null ) {
+      node = new Node( path, directory );
+      nodes.put( path, node );
+      int index = path.lastIndexOf( PATH_SEPARATOR );
+      Node parent = add( index < 0 ? "" : path.substring( 0, index ), resolve( url, directory ? "../" : "./" ), true );
+      parent.children.put( index < 0 ? path : path.substring( index + 1 ), node );
+    }
+    if ( node.url == null ) {
+      node.url = url;
+    }
+    return node;
+  }
+
+  /**
+   * @return the URL of a folder entry relative to another, {@code null} if it can't be told
+   */
+  private static URL resolve( URL url, String relative ) {
+    if ( url == null ) {
+      return null;
+    }
+    try {
+      return new URL( url, relative );
+    } catch ( MalformedURLException e ) {
+      return null;
+    }
+  }
+
+  private static String normalize( String path ) {
+    int start = 0;
+    int end = path.length();
+    while ( start < end && path.charAt( start ) == '/' ) {
+      start++;
+    }
+    while ( end > start && path.charAt( end - 1 ) == '/' ) {
+      end--;
+    }
+    return path.substring( start, end );
+  }
+
+  private static final class Node {
+    private final String path;
+    private final boolean directory;
+    // by name, sorted
+    private final Map<String, Node> children = new TreeMap<>();
+    private URL url;
+
+    private Node( String path, boolean directory ) {
+      this.path = path;
+      this.directory = directory;
+    }
+  }
+}
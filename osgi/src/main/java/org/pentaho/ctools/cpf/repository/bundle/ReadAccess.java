@@ -15,15 +15,8 @@ package org.pentaho.ctools.cpf.repository.bundle;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.util.Collections;
-import java.util.Enumeration;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Spliterator;
-import java.util.Spliterators;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 import org.osgi.framework.Bundle;
 import pt.webdetails.cpf.repository.api.IBasicFile;
 import pt.webdetails.cpf.repository.api.IBasicFileFilter;
@@ -32,6 +25,8 @@ import pt.webdetails.cpf.repository.api.IReadAccess;
 /**
  * Allows read-only operations on OSGi bundle resources abstracted as {@code BasicFile}s.
  * All paths should use '/' as the separator.
+ * Entries are looked up in an index of the bundle contents, read the first time it is needed and again whenever the
+ * bundle is updated.
  *
  * @see IReadAccess
  * @see IBasicFile
@@ -45,10 +40,11 @@ public final class ReadAccess implements IReadAccess {
     this.bundle = bundle;
   }
   private Bundle bundle;
+  private volatile BundleEntryIndex entryIndex;
 
   @Override
   public InputStream getFileInputStream( String path ) throws IOException {
-    final URL resourceURL = this.bundle.getEntry( path );
+    final URL resourceURL = getEntryIndex().getEntry( path );
     if ( resourceURL == null ) {
       return null;
     }
@@ -57,7 +53,7 @@ public final class ReadAccess implements IReadAccess {
 
   @Override
   public boolean fileExists( String path ) {
-    return this.bundle.getEntry( path ) != null;
+    return getEntryIndex().exists( path );
   }
 
   @Override
@@ -67,7 +63,7 @@ public final class ReadAccess implements IReadAccess {
 
   @Override
   public IBasicFile fetchFile( String path ) {
-    URL url = this.bundle.getEntry( path );
+    URL url = getEntryIndex().getEntry( path );
     if ( url == null ) {
       return null;
     }
@@ -92,40 +88,31 @@ public final class ReadAccess implements IReadAccess {
 
   @Override
   public List<IBasicFile> listFiles( String path, IBasicFileFilter filter, int maxDepth, boolean includeDirs, boolean showHiddenFilesAndFolders ) {
-    return listFiles( path, filter, maxDepth < 0 );
+    return getEntryIndex().list( path, maxDepth, includeDirs ).stream()
+      .map( BasicFile::new )
+      .filter( file -> filter == null || filter.accept( file ) )
+      .collect( Collectors.toList() );
   }
 
-  private boolean filterBundleFolders( URL url ) {
-    final String path = url.getPath();
-    return !( path.endsWith( "/META-INF/" ) || path.endsWith( "/OSGI-INF/" ) );
+  /**
+   * @return changes whenever the bundle is updated in place
+   */
+  long getRevision() {
+    return bundle.getLastModified();
   }
 
-  private List<IBasicFile> listFiles( String path, IBasicFileFilter filter, boolean recursive ) {
-    Enumeration<URL> entries = this.bundle.findEntries( path, null, recursive );
-
-    if ( entries == null ) {
-      return Collections.emptyList();
+  private BundleEntryIndex getEntryIndex() {
+    BundleEntryIndex index = this.entryIndex;
+    if ( index == null || !index.isCurrent( this.bundle ) ) {
+      synchronized ( this ) {
+        index = this.entryIndex;
+        if ( index == null || !index.isCurrent( this.bundle ) ) {
+          index = new BundleEntryIndex( this.bundle );
+          this.entryIndex = index;
+        }
+      }
     }
-
-    return enumerationAsStream( entries )
-      .filter( this::filterBundleFolders )
-      .map( BasicFile::new )
-      .filter( filter::accept )
-      .collect( Collectors.toList() );
-  }
-
-  private <T> Stream<T> enumerationAsStream( Enumeration<T> e ) {
-    return StreamSupport.stream(
-      Spliterators.spliteratorUnknownSize(
-        new Iterator<T>() {
-          public T next() {
-            return e.nextElement();
-          }
-          public boolean hasNext() {
-            return e.hasMoreElements();
-          }
-        },
-        Spliterator.ORDERED ), false );
+    return index;
   }
 
 }
@@ -14,9 +14,11 @@ package org.pentaho.ctools.cpf.repository.bundle;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import org.pentaho.ctools.cpf.repository.utils.OverlayIndex;
 import pt.webdetails.cpf.repository.api.IBasicFile;
 import pt.webdetails.cpf.repository.api.IBasicFileFilter;
 import pt.webdetails.cpf.repository.api.IReadAccess;
@@ -24,16 +26,20 @@ import pt.webdetails.cpf.repository.api.IReadAccess;
 /**
  * Class used for forwarding {@code IReadAccess} operations to the appropriate {@code ReadAccess} service instance that
  * contains the resources being accessed.
+ * Which instance contains each path, or that none does, is remembered until one of the bundles is updated in place,
+ * or for a while for instances of other kinds.
  *
  * @see IReadAccess
  */
 public final class ReadAccessProxy implements IReadAccess {
-  private List<IReadAccess> readAccesses;
+  private static final int ROUTES_SIZE = 10000;
+
+  private volatile Routes routes;
   private final String basePath;
   private final String DEFAULT_PATH_SEPARATOR = "/";
 
   public ReadAccessProxy( List<IReadAccess> readAccesses, String basePath ) {
-    this.readAccesses = readAccesses;
+    this.routes = new Routes( readAccesses );
     this.basePath = basePath == null ? "" : basePath;
   }
 
@@ -108,14 +114,26 @@ public final class ReadAccessProxy implements IReadAccess {
   }
 
   private IReadAccess getReadAccess( String path ) {
+    Routes routes = this.routes;
+    if ( !routes.isCurrent() ) {
+      routes = new Routes( routes.readAccesses );
+      this.routes = routes;
+    }
+    Integer layer = routes.index.get( path );
+
+    if ( layer == null ) {
+      // get the first that contains the resource at path
+      layer = OverlayIndex.NO_LAYER;
+      for ( int i = 0; i < routes.readAccesses.size(); i++ ) {
+        if ( routes.readAccesses.get( i ).fileExists( path ) ) {
+          layer = i;
+          break;
+        }
+      }
+      routes.index.put( path, layer );
+    }
 
-    // get the first that contains the resource at path
-    Optional<IReadAccess> readAccessOpt = this.readAccesses.stream()
-      .filter( readA -> readA.fileExists( path ) )
-      .findFirst();
-
-    return readAccessOpt.orElse( null );
-
+    return layer == OverlayIndex.NO_LAYER ? null : routes.readAccesses.get( layer );
   }
 
   private String buildPath( String path ) {
@@ -132,4 +150,33 @@ public final class ReadAccessProxy implements IReadAccess {
 
     return fullPath;
   }
+
+  /**
+   * Instances forwarded to, and which of them contains each path, as of the revisions of their bundles.
+   */
+  private static final class Routes {
+    private final List<IReadAccess> readAccesses;
+    private final long[] revisions;
+    private final OverlayIndex index = new OverlayIndex( ROUTES_SIZE, OverlayIndex.DEFAULT_TTL );
+
+    private Routes( List<IReadAccess> readAccesses ) {
+      this.readAccesses = Collections.unmodifiableList( new ArrayList<>( readAccesses ) );
+      this.revisions = getRevisions( this.readAccesses );
+    }
+
+    private boolean isCurrent() {
+      return Arrays.equals( revisions, getRevisions( readAccesses ) );
+    }
+
+    private static long[] getRevisions( List<IReadAccess> readAccesses ) {
+      long[] revisions = new long[ readAccesses.size() ];
+      for ( int i = 0; i < revisions.length; i++ ) {
+        IReadAccess readAccess = readAccesses.get( i );
+        if ( readAccess instanceof ReadAccess ) {
+          revisions[ i ] = ( (ReadAccess) readAccess ).getRevision();
+        }
+      }
+      return revisions;
+    }
+  }
 }
@@ -16,9 +16,6 @@ import java.io.File;
 import java.nio.file.FileSystems;
 import java.nio.file.FileSystem;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.logging.Log;
@@ -57,9 +54,9 @@ public final class ContentAccessFactory implements IContentAccessFactoryExtended
   private static final String SERVICE_PROPERTY_IS_USER_CONTENT = "isUserContent";
   private static final String PLUGIN_REPOS_NAMESPACE = "repos";
   private static final String PLUGIN_SYSTEM_NAMESPACE = "system";
-  private Map<String, List<IReadAccess>> pluginReadAccessMap = new HashMap<>();
-  private List<IReadAccess> userContentReadAccesses = new ArrayList<>();
-  private IUserContentAccessExtended userContentAccess = null;
+  // bound and unbound by the service framework while requests read it
+  private final ReadAccessRegistry readAccessRegistry = new ReadAccessRegistry();
+  private volatile IUserContentAccessExtended userContentAccess = null;
   private String baseStoragePath;
   private final String parentPluginId;
   private FileSystem storageFilesystem = FileSystems.getDefault();
@@ -88,21 +85,7 @@ public final class ContentAccessFactory implements IContentAccessFactoryExtended
    * @param readAccess instance of read access to the plugin resources
    */
   public void addReadOnlyPluginSystemAccess( String pluginId, IReadAccess readAccess ) {
-    List<IReadAccess> pluginList = getPluginSystemAccessList( pluginId );
-    pluginList.add( readAccess );
-  }
-
-  private List<IReadAccess> getPluginSystemAccessList( String pluginId ) {
-    List<IReadAccess> pluginList;
-
-    if ( !this.pluginReadAccessMap.containsKey( pluginId ) ) {
-      pluginList = new ArrayList<>();
-      this.pluginReadAccessMap.put( pluginId, pluginList );
-    } else {
-      pluginList = this.pluginReadAccessMap.get( pluginId );
-    }
-
-    return pluginList;
+    readAccessRegistry.addPluginAccess( pluginId, readAccess );
   }
 
   /**
@@ -111,10 +94,7 @@ public final class ContentAccessFactory implements IContentAccessFactoryExtended
    * @param readAccess instance of read access to the plugin resources
    */
   public void removeReadOnlyPluginSystemAccess( String pluginId, IReadAccess readAccess ) {
-    List<IReadAccess> pluginList = this.pluginReadAccessMap.get( pluginId );
-    if ( pluginList != null ) {
-      pluginList.remove( readAccess );
-    }
+    readAccessRegistry.removePluginAccess( pluginId, readAccess );
   }
 
   /**
@@ -133,7 +113,7 @@ public final class ContentAccessFactory implements IContentAccessFactoryExtended
       } else {
         Object isUserContent = serviceProperties.get( SERVICE_PROPERTY_IS_USER_CONTENT );
         if ( isUserContent != null && isUserContent instanceof Boolean && ((Boolean) isUserContent).booleanValue() ) {
-          userContentReadAccesses.add( readAccess );
+          readAccessRegistry.addUserContentAccess( readAccess );
         }
       }
     }
@@ -155,7 +135,7 @@ public final class ContentAccessFactory implements IContentAccessFactoryExtended
       } else {
         Object isUserContent = serviceProperties.get( SERVICE_PROPERTY_IS_USER_CONTENT );
         if ( isUserContent != null && isUserContent instanceof Boolean && ((Boolean) isUserContent).booleanValue() ) {
-          userContentReadAccesses.remove( readAccess );
+          readAccessRegistry.removeUserContentAccess( readAccess );
         }
       }
     }
@@ -163,10 +143,12 @@ public final class ContentAccessFactory implements IContentAccessFactoryExtended
 
   public void setUserContentAccess( IUserContentAccessExtended userContentAccess ) {
     this.userContentAccess = userContentAccess;
+    readAccessRegistry.resetUserContentOverlays();
   }
 
   public void removeUserContentAccess( IUserContentAccessExtended userContentAccess ) {
     this.userContentAccess = null;
+    readAccessRegistry.resetUserContentOverlays();
   }
 
   public FileSystem getPluginStorageFilesystem() {
@@ -175,6 +157,7 @@ public final class ContentAccessFactory implements IContentAccessFactoryExtended
 
   public void setPluginStorageFilesystem( FileSystem storageFilesystem ) {
     this.storageFilesystem = storageFilesystem;
+    readAccessRegistry.resetOverlays();
   }
 
   public String getBaseStoragePath() {
@@ -183,18 +166,24 @@ public final class ContentAccessFactory implements IContentAccessFactoryExtended
 
   public void setBaseStoragePath( String baseStoragePath ) {
     this.baseStoragePath = baseStoragePath;
+    readAccessRegistry.resetOverlays();
   }
 
   @Override
   public IUserContentAccessExtended getUserContentAccess( String basePath ) {
-    if ( userContentAccess == null ) {
-      if ( userContentReadAccesses.isEmpty() ) {
+    // read before the user content access, which resets them when changed
+    ReadAccessRegistry.Layers layers = readAccessRegistry.getUserContentLayers();
+    IUserContentAccessExtended writeAccess = userContentAccess;
+    if ( writeAccess == null ) {
+      if ( layers.getReadAccesses().isEmpty() ) {
         return null;
       } else {
-        return new UserContentAccess( new ReadAccessProxy( userContentReadAccesses, basePath ) );
+        return layers.getOverlay( basePath,
+          path -> new UserContentAccess( new ReadAccessProxy( layers.getReadAccesses(), path ) ) );
       }
     } else {
-      return new OverlayUserContentAccess( basePath, userContentAccess, userContentReadAccesses );
+      return layers.getOverlay( basePath,
+        path -> new OverlayUserContentAccess( path, writeAccess, layers.getReadAccesses() ) );
     }
   }
 
@@ -242,9 +231,13 @@ public final class ContentAccessFactory implements IContentAccessFactoryExtended
 
   private IRWAccess getPluginSystemOverlay( String pluginId, String basePath ) {
     // combine read-write via filesystem storage with bundle supplied read-only assets
-    String storagePath = createStoragePath( PLUGIN_SYSTEM_NAMESPACE, pluginId );
-    IRWAccess fileSystemWriter = new FileSystemRWAccess( storageFilesystem, storagePath, null );
-    return new OverlayRWAccess( basePath, fileSystemWriter, getPluginSystemAccessList( pluginId ) );
+    ReadAccessRegistry.Layers layers = readAccessRegistry.getPluginLayers( pluginId );
+    return layers.getOverlay( basePath, path -> {
+      String storagePath = createStoragePath( PLUGIN_SYSTEM_NAMESPACE, pluginId );
+      IRWAccess fileSystemWriter = new FileSystemRWAccess( storageFilesystem, storagePath, null );
+      // the plugin system storage is only written through these overlays
+      return new OverlayRWAccess( path, fileSystemWriter, layers.getReadAccesses(), layers.getIndex() );
+    } );
   }
 
   private String createStoragePath( String namespace ) {
@@ -0,0 +1,127 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.ctools.cpf.repository.factory;
+
+import org.pentaho.ctools.cpf.repository.utils.OverlayIndex;
+import pt.webdetails.cpf.repository.api.IReadAccess;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Class {@code ReadAccessRegistry} keeps the read accesses bound as services, per plugin and for user content.
+ * Changes are copy-on-write: each bind or unbind publishes new immutable {@link Layers}, so request threads always see
+ * a consistent list without locking. Overlays built over a list are kept along with it, and dropped when it changes.
+ */
+final class ReadAccessRegistry {
+  private static final int OVERLAY_INDEX_SIZE = 10000;
+
+  private final ConcurrentMap<String, Layers> pluginLayers = new ConcurrentHashMap<>();
+  private volatile Layers userContentLayers = new Layers( Collections.emptyList() );
+
+  /**
+   * @return the current read accesses of the plugin system namespace
+   */
+  Layers getPluginLayers( String pluginId ) {
+    return pluginLayers.computeIfAbsent( pluginId, id -> new Layers( Collections.emptyList() ) );
+  }
+
+  void addPluginAccess( String pluginId, IReadAccess readAccess ) {
+    pluginLayers.compute( pluginId, ( id, layers ) ->
+      ( layers == null ? new Layers( Collections.emptyList() ) : layers ).with( readAccess ) );
+  }
+
+  void removePluginAccess( String pluginId, IReadAccess readAccess ) {
+    pluginLayers.computeIfPresent( pluginId, ( id, layers ) -> layers.without( readAccess ) );
+  }
+
+  /**
+   * @return the current read accesses of user content
+   */
+  Layers getUserContentLayers() {
+    return userContentLayers;
+  }
+
+  synchronized void addUserContentAccess( IReadAccess readAccess ) {
+    userContentLayers = userContentLayers.with( readAccess );
+  }
+
+  synchronized void removeUserContentAccess( IReadAccess readAccess ) {
+    userContentLayers = userContentLayers.without( readAccess );
+  }
+
+  /**
+   * Drops the user content overlays, to be called when what they are built with changes.
+   */
+  synchronized void resetUserContentOverlays() {
+    userContentLayers = new Layers( userContentLayers.readAccesses );
+  }
+
+  /**
+   * Drops all overlays, to be called when what they are built with changes.
+   */
+  synchronized void resetOverlays() {
+    pluginLayers.replaceAll( ( id, layers ) -> new Layers( layers.readAccesses ) );
+    resetUserContentOverlays();
+  }
+
+  /**
+   * Immutable list of read accesses, in the order they were bound, and the overlays built over it.
+   */
+  static final class Layers {
+    private final List<IReadAccess> readAccesses;
+    private final OverlayIndex index = new OverlayIndex( OVERLAY_INDEX_SIZE, OverlayIndex.DEFAULT_TTL );
+    // by base path
+    private final ConcurrentMap<String, Object> overlays = new ConcurrentHashMap<>();
+
+    private Layers( List<IReadAccess> readAccesses ) {
+      this.readAccesses = readAccesses;
+    }
+
+    List<IReadAccess> getReadAccesses() {
+      return readAccesses;
+    }
+
+    /**
+     * @return which layer serves each path, for overlays over these read accesses
+     */
+    OverlayIndex getIndex() {
+      return index;
+    }
+
+    /**
+     * @param factory creates the overlay for a base path, if not already created
+     */
+    @SuppressWarnings( "unchecked" )
+    <T> T getOverlay( String basePath, Function<String, T> factory ) {
+      String key = basePath == null ? "" : basePath;
+      return (T) overlays.computeIfAbsent( key, path -> factory.apply( basePath ) );
+    }
+
+    private Layers with( IReadAccess readAccess ) {
+      List<IReadAccess> list = new ArrayList<>( readAccesses );
+      list.add( readAccess );
+      return new Layers( Collections.unmodifiableList( list ) );
+    }
+
+    private Layers without( IReadAccess readAccess ) {
+      List<IReadAccess> list = new ArrayList<>( readAccesses );
+      list.remove( readAccess );
+      return new Layers( Collections.unmodifiableList( list ) );
+    }
+  }
+}
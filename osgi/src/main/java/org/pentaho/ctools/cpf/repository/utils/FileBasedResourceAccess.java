@@ -133,11 +133,14 @@ public abstract class FileBasedResourceAccess implements IRWAccess {
       false );
   }
 
+  /**
+   * @param filter {@code null} to accept all files
+   */
   private FileFilter asFileFilter( final IBasicFileFilter filter ) {
     return new FileFilter() {
 
       public boolean accept( File file ) {
-        return filter.accept( asBasicFile( file, relativizePath( file ) ) );
+        return filter == null || filter.accept( asBasicFile( file, relativizePath( file ) ) );
       }
     };
   }
@@ -0,0 +1,63 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.ctools.cpf.repository.utils;
+
+import pt.webdetails.cpf.repository.api.IBasicFile;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Class {@code MergedListing} merges the file listings of overlay layers into one, where a file listed by several
+ * layers appears once, as listed by the first of them.
+ * Files are told apart by their relative path, regardless of leading or trailing separators, as layers don't agree on
+ * those.
+ *
+ * @see OverlayAccess
+ */
+public final class MergedListing {
+  private static final String PATH_SEPARATOR = "/";
+
+  private MergedListing() {
+  }
+
+  /**
+   * Merges the listings lazily: each layer is only listed once the files of the previous ones have been consumed.
+   *
+   * @param layerListings listings in layer precedence order, {@code null} for layers without the path
+   * @return a sequential stream of the merged files
+   */
+  public static Stream<IBasicFile> merge( Stream<List<IBasicFile>> layerListings ) {
+    Set<String> seen = new HashSet<>();
+    return layerListings.sequential()
+      .filter( Objects::nonNull )
+      .flatMap( List::stream )
+      .filter( file -> seen.add( normalize( file ) ) );
+  }
+
+  static String normalize( IBasicFile file ) {
+    String path = file.getPath() != null ? file.getPath() : file.getFullPath();
+    int start = 0;
+    int end = path.length();
+    while ( start < end && path.startsWith( PATH_SEPARATOR, start ) ) {
+      start++;
+    }
+    while ( end > start && path.startsWith( PATH_SEPARATOR, end - 1 ) ) {
+      end--;
+    }
+    return path.substring( start, end );
+  }
+}
@@ -25,21 +25,32 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public abstract class OverlayAccess<T extends IRWAccess> implements IRWAccess {
   protected final T writeAccess;
   protected final List<IReadAccess> readAccessList;
   protected final String DEFAULT_PATH_SEPARATOR = "/";
   private final String basePath;
+  private final OverlayIndex index;
   protected static final Log logger = LogFactory.getLog( OverlayAccess.class );
 
   public OverlayAccess( String basePath, T writeAccess, List<IReadAccess> readAccessList ) {
+    this( basePath, writeAccess, readAccessList, null );
+  }
+
+  /**
+   * @param index which layer serves each path, shared by the overlays over the same layers
+   */
+  public OverlayAccess( String basePath, T writeAccess, List<IReadAccess> readAccessList, OverlayIndex index ) {
     if ( writeAccess == null ) {
       throw new IllegalArgumentException( "writeAccess cannot be null" );
     }
     this.writeAccess = writeAccess;
     this.readAccessList = readAccessList == null ? Collections.emptyList() : readAccessList;
     this.basePath = ( basePath == null || basePath.isEmpty() ) ? DEFAULT_PATH_SEPARATOR : ( basePath.endsWith( DEFAULT_PATH_SEPARATOR ) ? basePath : basePath + DEFAULT_PATH_SEPARATOR );
+    this.index = index;
   }
 
   // helper methods
@@ -111,31 +122,66 @@ public abstract class OverlayAccess<T extends IRWAccess> implements IRWAccess {
 
   protected IBasicFileExt obtainReadAccess( String path ) {
     String fullPath = buildPath( path );
-    IBasicFile basicFile;
+    IBasicFileExt basicFile;
 
-    logger.info( "Overlay: read( basePath: " + basePath + "): " + fullPath );
+    if ( logger.isDebugEnabled() ) {
+      logger.debug( "Overlay: read( basePath: " + basePath + "): " + fullPath );
+    }
 
-    /* check write access layer */
-    if ( writeAccess.fileExists( fullPath ) ) {
-      basicFile = writeAccess.fetchFile( fullPath );
-      if ( basicFile != null ) {
-        return extendBasicFile( basicFile, () -> writeAccess.getLastModified( fullPath ) );
+    /* check the layer known to serve the path */
+    Integer knownLayer = index != null ? index.get( fullPath ) : null;
+    if ( knownLayer != null ) {
+      if ( knownLayer == OverlayIndex.NO_LAYER ) {
+        // the write layer may have been written to by other means since
+        if ( !writeAccess.fileExists( fullPath ) ) {
+          return null;
+        }
+      } else {
+        basicFile = fetchFromLayer( knownLayer, fullPath );
+        if ( basicFile != null ) {
+          return basicFile;
+        }
       }
     }
 
-    /* check other layers */
-    for ( IReadAccess readAccess : readAccessList ) {
-      if ( readAccess.fileExists( fullPath ) ) {
-        basicFile = readAccess.fetchFile( fullPath );
+    /* check write access layer, then other layers */
+    for ( int layer = OverlayIndex.WRITE_LAYER; layer < readAccessList.size(); layer++ ) {
+      if ( getLayer( layer ).fileExists( fullPath ) ) {
+        basicFile = fetchFromLayer( layer, fullPath );
         if ( basicFile != null ) {
-          return extendBasicFile( basicFile, () -> 0L );
+          if ( index != null ) {
+            index.put( fullPath, layer );
+          }
+          return basicFile;
         }
       }
     }
 
+    if ( index != null ) {
+      index.put( fullPath, OverlayIndex.NO_LAYER );
+    }
     return null;
   }
 
+  private IReadAccess getLayer( int layer ) {
+    return layer == OverlayIndex.WRITE_LAYER ? writeAccess : readAccessList.get( layer );
+  }
+
+  private IBasicFileExt fetchFromLayer( int layer, String fullPath ) {
+    if ( layer >= readAccessList.size() ) {
+      // layers changed since indexed
+      return null;
+    }
+    IBasicFile basicFile = getLayer( layer ).fetchFile( fullPath );
+    if ( basicFile == null ) {
+      return null;
+    }
+    if ( layer == OverlayIndex.WRITE_LAYER ) {
+      return extendBasicFile( basicFile, () -> writeAccess.getLastModified( fullPath ) );
+    }
+    return extendBasicFile( basicFile, () -> 0L );
+  }
+
   @Override
   public InputStream getFileInputStream( String path ) throws IOException {
     IBasicFileExt basicFile = obtainReadAccess( path );
@@ -161,27 +207,31 @@ public abstract class OverlayAccess<T extends IRWAccess> implements IRWAccess {
 
   @Override
   public List<IBasicFile> listFiles( String path, IBasicFileFilter filter, int maxDepth, boolean includeDirs, boolean showHiddenFilesAndFolders ) {
-    ArrayList<IBasicFile> result = new ArrayList<>();
     String fullPath = buildPath( path );
-
-    // get result from RW layer
-    List<IBasicFile> writeLayerFiles = writeAccess.listFiles( fullPath, filter, maxDepth, includeDirs, showHiddenFilesAndFolders );
-    if ( writeLayerFiles != null ) {
-      result.addAll( writeLayerFiles );
-    }
-
-    // add non-overlapping results from read-only layers
-    for ( IReadAccess readAccess : this.readAccessList ) {
-      List<IBasicFile> files = readAccess.listFiles( fullPath, filter, maxDepth, includeDirs, showHiddenFilesAndFolders );
-      if ( files != null ) {
-        for ( IBasicFile file : files ) {
-          if ( !result.contains( file ) ) {
-            result.add( file );
-          }
-        }
+    // filters can't be told apart, only unfiltered listings are kept
+    boolean cached = index != null && filter == null;
+    List<IBasicFile> result = cached
+      ? index.getListing( fullPath, maxDepth, includeDirs, showHiddenFilesAndFolders ) : null;
+    if ( result == null ) {
+      result = streamFiles( path, filter, maxDepth, includeDirs, showHiddenFilesAndFolders )
+        .collect( Collectors.toList() );
+      if ( cached ) {
+        index.putListing( fullPath, maxDepth, includeDirs, showHiddenFilesAndFolders, result );
       }
     }
-    return result;
+    return new ArrayList<>( result );
+  }
+
+  /**
+   * Lists the files of all layers, the RW layer first, leaving out files already listed by a previous layer. Each
+   * layer is only listed when the stream gets to it.
+   */
+  public Stream<IBasicFile> streamFiles( String path, IBasicFileFilter filter, int maxDepth, boolean includeDirs,
+                                         boolean showHiddenFilesAndFolders ) {
+    String fullPath = buildPath( path );
+    Stream<IReadAccess> layers = Stream.concat( Stream.of( writeAccess ), readAccessList.stream() );
+    return MergedListing.merge(
+      layers.map( layer -> layer.listFiles( fullPath, filter, maxDepth, includeDirs, showHiddenFilesAndFolders ) ) );
   }
 
   @Override
@@ -207,7 +257,7 @@ public abstract class OverlayAccess<T extends IRWAccess> implements IRWAccess {
   @Override
   public boolean saveFile( String path, InputStream contents ) {
     String fullPath = buildPath( path );
-    return writeAccess.saveFile( fullPath, contents );
+    return written( fullPath, writeAccess.saveFile( fullPath, contents ) );
   }
 
   @Override
@@ -220,7 +270,7 @@ public abstract class OverlayAccess<T extends IRWAccess> implements IRWAccess {
         return false;
       }
       String fullPathTo = buildPath( pathTo );
-      return writeAccess.saveFile( fullPathTo, sourceContents );
+      return written( fullPathTo, writeAccess.saveFile( fullPathTo, sourceContents ) );
     } catch ( IOException ex ) {
       logger.error( ex );
       return false;
@@ -230,7 +280,11 @@ public abstract class OverlayAccess<T extends IRWAccess> implements IRWAccess {
   @Override
   public boolean deleteFile( String path ) {
     String fullPath = buildPath( path );
-    return writeAccess.deleteFile( fullPath );
+    boolean deleted = writeAccess.deleteFile( fullPath );
+    if ( deleted && index != null ) {
+      index.deleted( fullPath );
+    }
+    return deleted;
   }
 
   @Override
@@ -241,6 +295,18 @@ public abstract class OverlayAccess<T extends IRWAccess> implements IRWAccess {
   @Override
   public boolean createFolder( String path, boolean isHidden ) {
     String fullPath = buildPath( path );
-    return writeAccess.createFolder( fullPath, isHidden );
+    return written( fullPath, writeAccess.createFolder( fullPath, isHidden ) );
+  }
+
+  /**
+   * Keeps the index current after writing to the write layer.
+   *
+   * @return whether the write succeeded
+   */
+  protected boolean written( String fullPath, boolean success ) {
+    if ( success && index != null ) {
+      index.written( fullPath );
+    }
+    return success;
   }
 }
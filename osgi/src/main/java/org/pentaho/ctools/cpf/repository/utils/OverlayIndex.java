@@ -0,0 +1,195 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.ctools.cpf.repository.utils;
+
+import pt.webdetails.cpf.repository.api.IBasicFile;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Class {@code OverlayIndex} remembers which layer of an overlay serves each path, so that resolving a path already
+ * seen is a single lookup instead of probing every layer.
+ * Paths are added as they are first resolved. The write layer is kept current by the overlays writing through it, but
+ * may also be changed from outside, e.g. by another plugin's overlays or by files copied into its folder; so, as read
+ * layers may be replaced in place, everything not served by the write layer expires.
+ * Unfiltered merged listings are kept as well, for as long, or until something under the listed folder is written.
+ * Filtered ones aren't: filters are created per call and don't tell when they are the same.
+ *
+ * @see OverlayAccess
+ */
+public final class OverlayIndex {
+  /**
+   * Layer of paths served by the write access.
+   */
+  public static final int WRITE_LAYER = -1;
+  /**
+   * Layer of paths no layer has.
+   */
+  public static final int NO_LAYER = -2;
+  /**
+   * How long paths not served by the write layer are kept, unless configured otherwise.
+   */
+  public static final long DEFAULT_TTL = Long.getLong( "repos.overlay.indexTtl", 5000L );
+
+  private static final String PATH_SEPARATOR = "/";
+  private static final int MAX_LISTINGS = 256;
+
+  private final int maxEntries;
+  private final long ttlMillis;
+  private final LongSupplier clock;
+  private final Map<String, Entry> layers = new ConcurrentHashMap<>();
+  // by folder, depth and flags
+  private final Map<List<Object>, Listing> listings = new ConcurrentHashMap<>();
+
+  /**
+   * @param maxEntries the index is emptied when it grows above this size
+   * @param ttlMillis  how long paths not served by the write layer are kept
+   */
+  public OverlayIndex( int maxEntries, long ttlMillis ) {
+    this( maxEntries, ttlMillis, System::currentTimeMillis );
+  }
+
+  OverlayIndex( int maxEntries, long ttlMillis, LongSupplier clock ) {
+    this.maxEntries = maxEntries;
+    this.ttlMillis = ttlMillis;
+    this.clock = clock;
+  }
+
+  /**
+   * @return the layer serving the path: {@link #WRITE_LAYER}, {@link #NO_LAYER} or the position in the read access
+   * list; {@code null} if not known
+   */
+  public Integer get( String path ) {
+    Entry entry = layers.get( path );
+    if ( entry == null ) {
+      return null;
+    }
+    if ( entry.layer != WRITE_LAYER && clock.getAsLong() >= entry.expires ) {
+      layers.remove( path, entry );
+      return null;
+    }
+    return entry.layer;
+  }
+
+  /**
+   * @return the unfiltered merged listing if kept, {@code null} otherwise
+   */
+  public List<IBasicFile> getListing( String path, int maxDepth, boolean includeDirs,
+                                      boolean showHiddenFilesAndFolders ) {
+    List<Object> key = Arrays.asList( path, maxDepth, includeDirs, showHiddenFilesAndFolders );
+    Listing listing = listings.get( key );
+    if ( listing == null ) {
+      return null;
+    }
+    if ( clock.getAsLong() >= listing.expires ) {
+      listings.remove( key, listing );
+      return null;
+    }
+    return listing.files;
+  }
+
+  /**
+   * @param files unfiltered merged listing, not to be changed afterwards
+   */
+  public void putListing( String path, int maxDepth, boolean includeDirs, boolean showHiddenFilesAndFolders,
+                          List<IBasicFile> files ) {
+    if ( listings.size() >= MAX_LISTINGS ) {
+      listings.clear();
+    }
+    listings.put( Arrays.asList( path, maxDepth, includeDirs, showHiddenFilesAndFolders ),
+      new Listing( files, clock.getAsLong() + ttlMillis ) );
+  }
+
+  public void put( String path, int layer ) {
+    if ( layers.size() >= maxEntries ) {
+      layers.clear();
+    }
+    layers.put( path, new Entry( layer, clock.getAsLong() + ttlMillis ) );
+  }
+
+  /**
+   * A file or folder was written to the write layer, which also creates any missing parent folders.
+   */
+  public void written( String path ) {
+    put( path, WRITE_LAYER );
+    invalidateListings( path );
+    int index = path.lastIndexOf( PATH_SEPARATOR );
+    while ( index > 0 ) {
+      layers.computeIfPresent( path.substring( 0, index ),
+        ( folder, entry ) -> entry.layer == NO_LAYER ? null : entry );
+      index = path.lastIndexOf( PATH_SEPARATOR, index - 1 );
+    }
+  }
+
+  /**
+   * A file or folder was deleted from the write layer; it, and anything under it, may now be served by another layer.
+   */
+  public void deleted( String path ) {
+    String prefix = path.endsWith( PATH_SEPARATOR ) ? path : path + PATH_SEPARATOR;
+    layers.remove( path );
+    invalidateListings( path );
+    for ( Iterator<String> it = layers.keySet().iterator(); it.hasNext(); ) {
+      if ( it.next().startsWith( prefix ) ) {
+        it.remove();
+      }
+    }
+  }
+
+  public void clear() {
+    layers.clear();
+    listings.clear();
+  }
+
+  /**
+   * Drops the listings of the folders the path is in, and of those under it.
+   */
+  private void invalidateListings( String path ) {
+    String pathPrefix = path.endsWith( PATH_SEPARATOR ) ? path : path + PATH_SEPARATOR;
+    for ( Iterator<List<Object>> it = listings.keySet().iterator(); it.hasNext(); ) {
+      String folder = (String) it.next().get( 0 );
+      String prefix = folder.endsWith( PATH_SEPARATOR ) ? folder : folder + PATH_SEPARATOR;
+      if ( path.equals( folder ) || path.startsWith( prefix ) || folder.startsWith( pathPrefix ) ) {
+        it.remove();
+      }
+    }
+  }
+
+  public int size() {
+    return layers.size();
+  }
+
+  private static final class Listing {
+    private final List<IBasicFile> files;
+    private final long expires;
+
+    private Listing( List<IBasicFile> files, long expires ) {
+      this.files = files;
+      this.expires = expires;
+    }
+  }
+
+  private static final class Entry {
+    private final int layer;
+    private final long expires;
+
+    private Entry( int layer, long expires ) {
+      this.layer = layer;
+      this.expires = expires;
+    }
+  }
+}
@@ -31,6 +31,11 @@ public final class OverlayRWAccess extends OverlayAccess<IRWAccess> {
     super( basePath, writeAccess, readAccessList );
   }
 
+  public OverlayRWAccess( String basePath, IRWAccess writeAccess, List<IReadAccess> readAccessList,
+                          OverlayIndex index ) {
+    super( basePath, writeAccess, readAccessList, index );
+  }
+
   @Override
   protected IBasicFileExt obtainReadAccess( String path ) {
     IBasicFileExt result = super.obtainReadAccess( path );
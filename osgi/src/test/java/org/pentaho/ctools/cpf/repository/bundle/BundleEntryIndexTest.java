@@ -0,0 +1,103 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.ctools.cpf.repository.bundle;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BundleEntryIndexTest {
+
+  private MockBundle bundle;
+
+  @Before
+  public void setUp() {
+    // no folder entries, as in jars built without them
+    bundle = new MockBundle()
+      .add( "/a.txt", "a" )
+      .add( "/dir/b.txt", "b" )
+      .add( "/dir/sub/c.txt", "c" )
+      .add( "/META-INF/MANIFEST.MF", "manifest" )
+      .add( "/OSGI-INF/blueprint/blueprint.xml", "blueprint" );
+  }
+
+  @Test
+  public void testFoldersWithoutEntries() throws Exception {
+    BundleEntryIndex index = new BundleEntryIndex( bundle.getBundle() );
+    assertTrue( index.exists( "/dir" ) );
+    assertTrue( index.exists( "/dir/sub" ) );
+    assertEquals( bundle.getUrl( "/dir/" ), index.getEntry( "/dir" ) );
+    assertEquals( bundle.getUrl( "/dir/sub/" ), index.getEntry( "/dir/sub" ) );
+    assertEquals( Arrays.asList( "/a.txt", "/dir/", "/dir/b.txt", "/dir/sub/", "/dir/sub/c.txt" ),
+      paths( index.list( "/", -1, true ) ) );
+  }
+
+  @Test
+  public void testDepth() {
+    BundleEntryIndex index = new BundleEntryIndex( bundle.getBundle() );
+    assertEquals( Arrays.asList( "/a.txt" ), paths( index.list( "/", 1, false ) ) );
+    // the folder contents are listed even at no depth
+    assertEquals( Arrays.asList( "/a.txt" ), paths( index.list( "/", 0, false ) ) );
+    assertEquals( Arrays.asList( "/a.txt", "/dir/b.txt" ), paths( index.list( "/", 2, false ) ) );
+    assertEquals( Arrays.asList( "/a.txt", "/dir/b.txt", "/dir/sub/c.txt" ), paths( index.list( "/", -1, false ) ) );
+    assertEquals( Arrays.asList( "/a.txt", "/dir/" ), paths( index.list( "/", 1, true ) ) );
+  }
+
+  @Test
+  public void testBundleFoldersSkipped() {
+    BundleEntryIndex index = new BundleEntryIndex( bundle.getBundle() );
+    for ( String path : paths( index.list( "/", -1, true ) ) ) {
+      assertFalse( path, path.contains( "-INF" ) );
+    }
+    // but still there to be read
+    assertTrue( index.exists( "/META-INF/MANIFEST.MF" ) );
+  }
+
+  @Test
+  public void testNormalize() throws Exception {
+    BundleEntryIndex index = new BundleEntryIndex( bundle.getBundle() );
+    assertEquals( bundle.getUrl( "/dir/b.txt" ), index.getEntry( "dir/b.txt" ) );
+    assertEquals( bundle.getUrl( "/dir/b.txt" ), index.getEntry( "//dir/b.txt/" ) );
+    assertEquals( paths( index.list( "/dir", -1, true ) ), paths( index.list( "dir/", -1, true ) ) );
+    assertEquals( paths( index.list( "/", -1, true ) ), paths( index.list( "", -1, true ) ) );
+    assertNull( index.getEntry( "/missing.txt" ) );
+    assertTrue( index.list( "/a.txt", -1, true ).isEmpty() );
+    assertTrue( index.list( "/missing", -1, true ).isEmpty() );
+  }
+
+  @Test
+  public void testUpdated() {
+    BundleEntryIndex index = new BundleEntryIndex( bundle.getBundle() );
+    assertTrue( index.isCurrent( bundle.getBundle() ) );
+    bundle.update();
+    assertFalse( index.isCurrent( bundle.getBundle() ) );
+    assertFalse( index.isCurrent( new MockBundle().getBundle() ) );
+  }
+
+  private static List<String> paths( List<URL> urls ) {
+    List<String> paths = new ArrayList<>();
+    for ( URL url : urls ) {
+      paths.add( url.getPath() );
+    }
+    return paths;
+  }
+}
@@ -0,0 +1,110 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.ctools.cpf.repository.bundle;
+
+import org.osgi.framework.Bundle;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A mocked {@link Bundle} with the given entries, whose URLs can be opened. Like jars built without folder entries,
+ * folders are only listed if added.
+ */
+public final class MockBundle {
+
+  private final Map<String, String> entries = new TreeMap<>();
+  private final Bundle bundle = mock( Bundle.class );
+  private long lastModified = 1;
+
+  private final URLStreamHandler handler = new URLStreamHandler() {
+    @Override
+    protected URLConnection openConnection( URL url ) {
+      return new URLConnection( url ) {
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public InputStream getInputStream() throws FileNotFoundException {
+          String contents = entries.get( url.getPath() );
+          if ( contents == null ) {
+            throw new FileNotFoundException( url.toString() );
+          }
+          return new ByteArrayInputStream( contents.getBytes( StandardCharsets.UTF_8 ) );
+        }
+      };
+    }
+  };
+
+  public MockBundle() {
+    when( bundle.findEntries( "/", null, true ) ).thenAnswer( invocation -> Collections.enumeration( getUrls() ) );
+    when( bundle.getLastModified() ).thenAnswer( invocation -> lastModified );
+  }
+
+  /**
+   * @param path absolute, ending with a separator for folders
+   */
+  public MockBundle add( String path, String contents ) {
+    entries.put( path, path.endsWith( "/" ) ? "" : contents );
+    return this;
+  }
+
+  public MockBundle remove( String path ) {
+    entries.remove( path );
+    return this;
+  }
+
+  /**
+   * The bundle was updated in place, with whatever entries it has now.
+   */
+  public void update() {
+    lastModified++;
+  }
+
+  public Bundle getBundle() {
+    return bundle;
+  }
+
+  public ReadAccess getReadAccess() {
+    ReadAccess readAccess = new ReadAccess();
+    readAccess.setBundle( bundle );
+    return readAccess;
+  }
+
+  public URL getUrl( String path ) throws MalformedURLException {
+    return new URL( "bundleentry", "1.fwk", -1, path, handler );
+  }
+
+  private List<URL> getUrls() throws MalformedURLException {
+    List<URL> urls = new ArrayList<>();
+    for ( String path : entries.keySet() ) {
+      urls.add( getUrl( path ) );
+    }
+    return urls;
+  }
+}
@@ -0,0 +1,81 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.ctools.cpf.repository.bundle;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import pt.webdetails.cpf.repository.api.IReadAccess;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReadAccessProxyTest {
+
+  private MockBundle first;
+  private MockBundle second;
+  private ReadAccessProxy proxy;
+
+  @Before
+  public void setUp() {
+    first = new MockBundle().add( "/a.txt", "first" );
+    second = new MockBundle().add( "/a.txt", "second" ).add( "/b.txt", "second" );
+    proxy = new ReadAccessProxy(
+      Arrays.<IReadAccess>asList( first.getReadAccess(), second.getReadAccess() ), "" );
+  }
+
+  @Test
+  public void testFirstContainingServes() throws IOException {
+    assertEquals( "first", read( proxy.getFileInputStream( "/a.txt" ) ) );
+    assertEquals( "second", read( proxy.getFileInputStream( "/b.txt" ) ) );
+    assertEquals( "first", read( proxy.getFileInputStream( "/a.txt" ) ) );
+    assertNull( proxy.getFileInputStream( "/c.txt" ) );
+    assertNull( proxy.fetchFile( "/c.txt" ) );
+  }
+
+  @Test
+  public void testMissesKeptUntilUpdated() {
+    assertFalse( proxy.fileExists( "/c.txt" ) );
+
+    // contents can't change without an update, the miss is still remembered
+    first.add( "/c.txt", "first" );
+    assertFalse( proxy.fileExists( "/c.txt" ) );
+
+    first.update();
+    assertTrue( proxy.fileExists( "/c.txt" ) );
+  }
+
+  @Test
+  public void testRoutesDroppedOnUpdate() throws IOException {
+    assertEquals( "first", read( proxy.getFileInputStream( "/a.txt" ) ) );
+
+    first.remove( "/a.txt" ).add( "/b.txt", "first" );
+    first.update();
+    assertEquals( "second", read( proxy.getFileInputStream( "/a.txt" ) ) );
+    assertEquals( "first", read( proxy.getFileInputStream( "/b.txt" ) ) );
+  }
+
+  private static String read( InputStream in ) throws IOException {
+    try {
+      return IOUtils.toString( in, "UTF-8" );
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.ctools.cpf.repository.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.ctools.cpf.repository.bundle.MockBundle;
+import pt.webdetails.cpf.repository.api.IBasicFile;
+import pt.webdetails.cpf.repository.api.IBasicFileFilter;
+import pt.webdetails.cpf.repository.api.IReadAccess;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OverlayAccessTest {
+
+  private static final IBasicFileFilter ALL = file -> true;
+
+  private File writeDir;
+  private File readDir;
+  private OverlayIndex index;
+  private OverlayRWAccess overlay;
+
+  @Before
+  public void setUp() throws IOException {
+    writeDir = Files.createTempDirectory( "cpf-overlay-write" ).toFile();
+    readDir = Files.createTempDirectory( "cpf-overlay-read" ).toFile();
+    index = new OverlayIndex( 100, 60000 );
+    overlay = createOverlay();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory( writeDir );
+    FileUtils.deleteDirectory( readDir );
+  }
+
+  @Test
+  public void testServedByFirstLayer() throws IOException {
+    write( readDir, "a.txt", "read" );
+    assertEquals( "read", read( overlay.getFileInputStream( "a.txt" ) ) );
+
+    assertTrue( overlay.saveFile( "a.txt", stream( "written" ) ) );
+    assertEquals( "written", read( overlay.getFileInputStream( "a.txt" ) ) );
+
+    assertTrue( overlay.deleteFile( "a.txt" ) );
+    assertEquals( "read", read( overlay.getFileInputStream( "a.txt" ) ) );
+  }
+
+  @Test
+  public void testMissingPathWrittenElsewhere() throws IOException {
+    assertFalse( overlay.fileExists( "a.txt" ) );
+
+    // e.g. through another plugin's overlay, with its own index
+    assertTrue( createOverlay( new OverlayIndex( 100, 60000 ) ).saveFile( "a.txt", stream( "written" ) ) );
+    assertEquals( "written", read( overlay.getFileInputStream( "a.txt" ) ) );
+
+    // or copied into the folder
+    write( writeDir, "b.txt", "copied" );
+    assertEquals( "copied", read( overlay.getFileInputStream( "b.txt" ) ) );
+  }
+
+  @Test
+  public void testListingMergesLayers() throws IOException {
+    write( writeDir, "a.txt", "written" );
+    new File( writeDir, "dir" ).mkdir();
+    write( writeDir, "dir/b.txt", "written" );
+    MockBundle bundle = new MockBundle()
+      .add( "/a.txt", "bundled" )
+      .add( "/c.txt", "bundled" )
+      .add( "/dir/b.txt", "bundled" )
+      .add( "/dir/d.txt", "bundled" )
+      .add( "/META-INF/MANIFEST.MF", "bundled" );
+    overlay = new OverlayRWAccess( null, createWriteAccess(),
+      Collections.<IReadAccess>singletonList( bundle.getReadAccess() ), index );
+
+    Map<String, String> listed = new TreeMap<>();
+    for ( IBasicFile file : overlay.listFiles( "", ALL, -1, false ) ) {
+      assertNull( "listed once", listed.put( MergedListing.normalize( file ), read( file.getContents() ) ) );
+    }
+    Map<String, String> expected = new TreeMap<>();
+    expected.put( "a.txt", "written" );
+    expected.put( "c.txt", "bundled" );
+    expected.put( "dir/b.txt", "written" );
+    expected.put( "dir/d.txt", "bundled" );
+    assertEquals( expected, listed );
+
+    // filtered listings aren't kept
+    write( writeDir, "e.txt", "copied" );
+    assertEquals( 5, overlay.listFiles( "", ALL, -1, false ).size() );
+  }
+
+  @Test
+  public void testUnfilteredListingCached() throws IOException {
+    write( readDir, "a.txt", "read" );
+    assertEquals( 1, overlay.listFiles( "", null, -1, false ).size() );
+
+    // read layers don't change while in use, the listing is kept
+    write( readDir, "b.txt", "read" );
+    assertEquals( 1, overlay.listFiles( "", null, -1, false ).size() );
+
+    // until written to
+    assertTrue( overlay.saveFile( "c.txt", stream( "written" ) ) );
+    assertEquals( 3, overlay.listFiles( "", null, -1, false ).size() );
+  }
+
+  private OverlayRWAccess createOverlay() {
+    return createOverlay( index );
+  }
+
+  private OverlayRWAccess createOverlay( OverlayIndex overlayIndex ) {
+    IReadAccess readAccess = new FileSystemRWAccess( FileSystems.getDefault(), readDir.getAbsolutePath(), null );
+    return new OverlayRWAccess( null, createWriteAccess(), Collections.singletonList( readAccess ), overlayIndex );
+  }
+
+  private FileSystemRWAccess createWriteAccess() {
+    return new FileSystemRWAccess( FileSystems.getDefault(), writeDir.getAbsolutePath(), null );
+  }
+
+  private static void write( File dir, String name, String contents ) throws IOException {
+    Files.write( new File( dir, name ).toPath(), contents.getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  private static InputStream stream( String contents ) {
+    return new ByteArrayInputStream( contents.getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  private static String read( InputStream input ) throws IOException {
+    try {
+      return IOUtils.toString( input, "UTF-8" );
+    } finally {
+      input.close();
+    }
+  }
+}
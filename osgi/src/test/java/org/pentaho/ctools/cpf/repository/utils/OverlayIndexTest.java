@@ -0,0 +1,118 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.ctools.cpf.repository.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import pt.webdetails.cpf.repository.api.IBasicFile;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class OverlayIndexTest {
+
+  private long now;
+  private OverlayIndex index;
+
+  @Before
+  public void setUp() {
+    index = new OverlayIndex( 4, 100, () -> now );
+  }
+
+  @Test
+  public void testReadLayersExpire() {
+    index.put( "/a.txt", OverlayIndex.NO_LAYER );
+    index.put( "/b.txt", 0 );
+    index.put( "/c.txt", OverlayIndex.WRITE_LAYER );
+    assertEquals( OverlayIndex.NO_LAYER, (int) index.get( "/a.txt" ) );
+
+    now += 100;
+    assertNull( index.get( "/a.txt" ) );
+    assertNull( index.get( "/b.txt" ) );
+    // kept current by the overlays, and checked on every read
+    assertEquals( OverlayIndex.WRITE_LAYER, (int) index.get( "/c.txt" ) );
+  }
+
+  @Test
+  public void testWrittenDropsMissingFolders() {
+    index.put( "/a", OverlayIndex.NO_LAYER );
+    index.put( "/a/b", OverlayIndex.NO_LAYER );
+    index.put( "/x", OverlayIndex.NO_LAYER );
+
+    index.written( "/a/b/c.txt" );
+    assertEquals( OverlayIndex.WRITE_LAYER, (int) index.get( "/a/b/c.txt" ) );
+    assertNull( index.get( "/a" ) );
+    assertNull( index.get( "/a/b" ) );
+    assertEquals( OverlayIndex.NO_LAYER, (int) index.get( "/x" ) );
+  }
+
+  @Test
+  public void testWrittenKeepsServedFolders() {
+    index.put( "/a", 1 );
+    index.written( "/a/b.txt" );
+    assertEquals( 1, (int) index.get( "/a" ) );
+  }
+
+  @Test
+  public void testDeletedDropsContents() {
+    index.put( "/a", OverlayIndex.WRITE_LAYER );
+    index.put( "/a/b.txt", OverlayIndex.WRITE_LAYER );
+    index.put( "/ab.txt", 1 );
+
+    index.deleted( "/a" );
+    assertNull( index.get( "/a" ) );
+    assertNull( index.get( "/a/b.txt" ) );
+    assertEquals( 1, (int) index.get( "/ab.txt" ) );
+  }
+
+  @Test
+  public void testListingsExpire() {
+    List<IBasicFile> files = Collections.emptyList();
+    index.putListing( "/a", -1, false, false, files );
+    assertSame( files, index.getListing( "/a", -1, false, false ) );
+    assertNull( index.getListing( "/a", 1, false, false ) );
+
+    now += 100;
+    assertNull( index.getListing( "/a", -1, false, false ) );
+  }
+
+  @Test
+  public void testWrittenDropsListings() {
+    List<IBasicFile> files = Collections.emptyList();
+    index.putListing( "/a", -1, false, false, files );
+    index.putListing( "/a/b/c", -1, false, false, files );
+    index.putListing( "/x", -1, false, false, files );
+
+    index.written( "/a/b" );
+    assertNull( index.getListing( "/a", -1, false, false ) );
+    assertNull( index.getListing( "/a/b/c", -1, false, false ) );
+    assertSame( files, index.getListing( "/x", -1, false, false ) );
+
+    index.deleted( "/x/y.txt" );
+    assertNull( index.getListing( "/x", -1, false, false ) );
+  }
+
+  @Test
+  public void testClearedWhenFull() {
+    for ( int i = 0; i < 4; i++ ) {
+      index.put( "/" + i, 0 );
+    }
+    index.put( "/4", 0 );
+    assertEquals( 1, index.size() );
+    assertEquals( 0, (int) index.get( "/4" ) );
+  }
+}
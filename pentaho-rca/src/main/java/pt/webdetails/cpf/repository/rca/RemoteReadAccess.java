@@ -18,14 +18,38 @@ import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileTreeDto;
+import pt.webdetails.cpf.repository.api.FileAccess;
 import pt.webdetails.cpf.repository.api.IBasicFile;
 import pt.webdetails.cpf.repository.api.IBasicFileFilter;
 import pt.webdetails.cpf.repository.api.IReadAccess;
-
+import pt.webdetails.cpf.Util;
+import pt.webdetails.cpf.repository.remote.CircuitBreaker;
+import pt.webdetails.cpf.repository.remote.ContentMirror;
+import pt.webdetails.cpf.repository.remote.MetadataCache;
+import pt.webdetails.cpf.repository.remote.MissingPathCache;
+import pt.webdetails.cpf.repository.remote.RemoteCallPolicy;
+import pt.webdetails.cpf.repository.remote.RemoteTransport;
+import pt.webdetails.cpf.repository.remote.SingleFlight;
+import pt.webdetails.cpf.repository.remote.TreeSnapshot;
+import pt.webdetails.cpf.repository.remote.TreeSnapshotCache;
+
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.Cleaner;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
@@ -34,6 +58,7 @@ import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.client.config.DefaultClientConfig;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 
 /**
@@ -49,12 +74,68 @@ public class RemoteReadAccess implements IReadAccess {
 
   protected String basePath = RepositoryFile.SEPARATOR;
 
+  static final int METADATA_CACHE_SIZE = Integer.getInteger( "repos.cache.size", 10000 );
+  static final long METADATA_CACHE_TTL = Long.getLong( "repos.cache.ttl", 10000L );
+  static final int TREE_CACHE_SIZE = Integer.getInteger( "repos.cache.trees", 64 );
+  static final long ACCESS_CACHE_TTL = Long.getLong( "repos.cache.accessTtl", 5000L );
+  static final long MISSING_CACHE_TTL = Long.getLong( "repos.cache.missingTtl", 2000L );
+  // shared by all accesses to the same server as the same user, as they are created per request
+  private static final ConcurrentMap<String, Caches> sharedCaches = new ConcurrentHashMap<>();
+
+  static final long CONTENT_MIRROR_SIZE = Long.getLong( "repos.mirror.size", 64L * 1024 * 1024 );
+  static final String CONTENT_MIRROR_DIR = System.getProperty( "repos.mirror.dir",
+    new File( System.getProperty( "java.io.tmpdir" ), "cpf-pentaho-rca-mirror" ).getPath() );
+  // contents are the same for every user, by server
+  private static final ConcurrentMap<String, ContentMirror> contentMirrors = new ConcurrentHashMap<>();
+
+  static final int CLIENT_CONNECTIONS =
+    Integer.getInteger( "repos.client.connections", Integer.getInteger( "http.maxConnections", 5 ) );
+  // clients are thread safe once configured, shared by all accesses to the same server as the same user
+  private static final ConcurrentMap<String, Connection> connections = new ConcurrentHashMap<>();
+  // closes the connections replaced meanwhile once the last access using them is collected
+  private static final Cleaner connectionCleaner = Cleaner.create();
+  // servers and users with shared state kept, emptied when full
+  static final int MAX_SHARED = Integer.getInteger( "repos.client.maxShared", 1000 );
+
+  static final int CONNECT_TIMEOUT = Integer.getInteger( "repos.client.connectTimeout", 5000 );
+  static final int READ_TIMEOUT = Integer.getInteger( "repos.client.readTimeout", 60000 );
+  static final int CHUNK_SIZE = Integer.getInteger( "repos.client.chunkSize", 8192 );
+  // how long retries may go on for, by operation
+  static final long METADATA_TIMEOUT = Long.getLong( "repos.client.metadataTimeout", 10000L );
+  static final long CONTENT_TIMEOUT = Long.getLong( "repos.client.contentTimeout", 60000L );
+  static final int RETRIES = Integer.getInteger( "repos.client.retries", 2 );
+  static final long RETRY_DELAY = Long.getLong( "repos.client.retryDelay", 100L );
+  static final int FAILURE_THRESHOLD = Integer.getInteger( "repos.client.failureThreshold", 5 );
+  static final long OPEN_TIME = Long.getLong( "repos.client.openTime", 30000L );
+  // server health is the same for every user, by server
+  private static final ConcurrentMap<String, RemoteCallPolicy> callPolicies = new ConcurrentHashMap<>();
+
+  protected RemoteCallPolicy callPolicy;
+  protected RemoteTransport transport;
+  protected MetadataCache<RepositoryFileDto> metadataCache;
+  protected TreeSnapshotCache<RepositoryFileDto> treeCache;
+  protected ContentMirror contentMirror;
+  protected Map<FileAccess, MetadataCache<Boolean>> accessCache;
+  protected MissingPathCache missingPaths;
+  protected SingleFlight<String, RepositoryFileDto> propertyFlights;
+  protected SingleFlight<String, Boolean> downloadFlights;
+
   public RemoteReadAccess( String reposURL, String username, String password ) {
     this.reposURL = reposURL;
-    ClientConfig clientConfig = new DefaultClientConfig();
-    clientConfig.getFeatures().put( JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE );
-    client = Client.create( clientConfig );
-    client.addFilter( new HTTPBasicAuthFilter( username, password ) );
+    Caches caches = getShared( sharedCaches, reposURL + "|" + username, key -> new Caches() );
+    metadataCache = caches.metadata;
+    treeCache = caches.trees;
+    accessCache = caches.access;
+    missingPaths = caches.missing;
+    propertyFlights = caches.propertyFlights;
+    downloadFlights = caches.downloadFlights;
+    contentMirror = getContentMirror( reposURL );
+    Connection connection = getConnection( reposURL, username, password );
+    client = connection.client;
+    transport = connection.transport;
+    connectionCleaner.register( this, connection::release );
+    callPolicy = getShared( callPolicies, reposURL,
+      url -> new RemoteCallPolicy( new CircuitBreaker( FAILURE_THRESHOLD, OPEN_TIME ), RETRIES, RETRY_DELAY ) );
   }
 
   public RemoteReadAccess( String basePath, String reposURL, String username, String password ) {
@@ -66,38 +147,135 @@ public class RemoteReadAccess implements IReadAccess {
   public InputStream getFileInputStream( String path ) throws IOException {
     // download method used because it does the correct conversions for ktr/kjb files (see CDA-93)
     String fullPath = buildPath( path );
+    String version = contentMirror != null ? getContentVersion( fullPath ) : null;
+    if ( version != null ) {
+      InputStream mirrored = contentMirror.get( fullPath, version );
+      // concurrent readers of the same version share a single download into the mirror
+      if ( mirrored == null && downloadFlights.run( fullPath + "@" + version, () -> mirror( fullPath, version ) ) ) {
+        mirrored = contentMirror.get( fullPath, version );
+      }
+      if ( mirrored != null ) {
+        return mirrored;
+      }
+    }
+    if ( missingPaths.isMissing( fullPath ) ) {
+      return null;
+    }
+    return download( fullPath );
+  }
+
+  /**
+   * Downloads the file contents into the content mirror. The mirror is only a shortcut, if it can't store the contents
+   * they are left to be downloaded directly.
+   *
+   * @return <code>false</code> if the file does not exist or could not be mirrored
+   */
+  private boolean mirror( String fullPath, String version ) throws IOException {
+    InputStream contents = download( fullPath );
+    if ( contents == null ) {
+      return false;
+    }
+    try ( InputStream downloaded = contents ) {
+      contentMirror.put( fullPath, version, downloaded ).close();
+      return true;
+    } catch ( IOException ex ) {
+      logger.warn( "Unable to mirror " + fullPath + ", downloading it instead", ex );
+      return false;
+    }
+  }
+
+  private InputStream download( String fullPath ) throws IOException {
     String requestURL = createRequestURL( fullPath, "download" );
+    return callPolicy.read( () -> {
+      ClientResponse clientResponse = client.resource( requestURL )
+        .queryParam( "withManifest", "false" )
+        .type( MediaType.APPLICATION_OCTET_STREAM_TYPE )
+        .get( ClientResponse.class );
+
+      if ( clientResponse != null && clientResponse.getStatus() == ClientResponse.Status.OK.getStatusCode() ) {
+        return clientResponse.getEntityInputStream();
+      }
+      if ( clientResponse != null ) {
+        int status = checkServerError( closeResponse( clientResponse ), requestURL );
+        if ( status == ClientResponse.Status.NOT_FOUND.getStatusCode() ) {
+          missingPaths.add( fullPath );
+        }
+      }
+      return null;
+    }, CONTENT_TIMEOUT );
+  }
 
-    ClientResponse clientResponse = client.resource( requestURL )
-      .queryParam( "withManifest", "false" )
-      .type( MediaType.APPLICATION_OCTET_STREAM_TYPE )
-      .get( ClientResponse.class );
+  /**
+   * Fetches the file contents in the transport pool, so several files can be fetched concurrently.
+   *
+   * @see #getFileInputStream(String)
+   */
+  public CompletableFuture<InputStream> getFileInputStreamAsync( String path ) {
+    return transport.submit( () -> getFileInputStream( path ) );
+  }
 
-    if ( clientResponse != null && clientResponse.getStatus() == ClientResponse.Status.OK.getStatusCode() ) {
-      return clientResponse.getEntityInputStream();
+  /**
+   * Checks several files at once, the ones not cached are fetched concurrently.
+   *
+   * @return if each file exists, by path
+   */
+  public Map<String, Boolean> fileExists( Collection<String> paths ) {
+    return fanOut( paths, this::fileExists );
+  }
+
+  /**
+   * Calls a remote check once for each distinct path, concurrently in the transport pool. Not to be called from the
+   * pool itself.
+   *
+   * @return the results, by path in the given order
+   */
+  <T> Map<String, T> fanOut( Collection<String> paths, Function<String, T> check ) {
+    Set<String> distinct = new LinkedHashSet<>( paths );
+    Map<String, T> results = new LinkedHashMap<>();
+    if ( distinct.size() == 1 ) {
+      String path = distinct.iterator().next();
+      results.put( path, check.apply( path ) );
+      return results;
+    }
+    Map<String, CompletableFuture<T>> pending = new LinkedHashMap<>();
+    for ( String path : distinct ) {
+      pending.put( path, transport.submit( () -> check.apply( path ) ) );
+    }
+    for ( Map.Entry<String, CompletableFuture<T>> result : pending.entrySet() ) {
+      results.put( result.getKey(), result.getValue().join() );
     }
-    return null;
+    return results;
   }
 
-  @Override
-  public boolean fileExists( String path ) {
+  /**
+   * Fetches the file properties in the transport pool, so several files can be fetched concurrently.
+   *
+   * @return completes with {@code null} if the file does not exist
+   */
+  public CompletableFuture<RepositoryFileDto> getPropertiesAsync( String path ) {
     String fullPath = buildPath( path );
-    String requestURL = createRequestURL( fullPath, "properties" );
+    return transport.submit( () -> getProperties( fullPath ) );
+  }
 
-    ClientResponse clientResponse = client.resource( requestURL )
-      .type( MediaType.APPLICATION_XML )
-      .get( ClientResponse.class );
+  /**
+   * @return identifies the current contents of the file for the content mirror, <code>null</code> if unknown
+   */
+  private String getContentVersion( String fullPath ) {
+    RepositoryFileDto properties = getProperties( fullPath );
+    if ( properties == null || properties.getLastModifiedDate() == null ) {
+      return null;
+    }
+    return properties.getLastModifiedDate() + ":" + properties.getFileSize();
+  }
 
-    return ( clientResponse != null && clientResponse.getStatus() == ClientResponse.Status.OK.getStatusCode() );
+  @Override
+  public boolean fileExists( String path ) {
+    return getProperties( buildPath( path ) ) != null;
   }
 
   @Override
   public long getLastModified( String path ) {
-    String fullPath = buildPath( path );
-    String requestURL = createRequestURL( fullPath, "properties" );
-    RepositoryFileDto response = client.resource( requestURL )
-      .type( MediaType.APPLICATION_XML )
-      .get( RepositoryFileDto.class );
+    RepositoryFileDto response = getProperties( buildPath( path ) );
 
     if ( response == null ) {
       return 0L;
@@ -108,6 +286,31 @@ public class RemoteReadAccess implements IReadAccess {
   @Override
   public List<IBasicFile> listFiles( String path, IBasicFileFilter filter, int maxDepth, boolean includeDirs, boolean showHiddenFilesAndFolders ) {
     String fullPath = buildPath( path );
+    TreeSnapshot<RepositoryFileDto> tree = treeCache.getListing( fullPath, maxDepth, showHiddenFilesAndFolders );
+    if ( tree == null ) {
+      tree = fetchTree( fullPath, maxDepth, showHiddenFilesAndFolders );
+      if ( tree == null ) {
+        return null;
+      }
+    }
+
+    return treeFlatten( tree, maxDepth, includeDirs, showHiddenFilesAndFolders, filter, fullPath );
+  }
+
+  /**
+   * Fetches the tree under a folder, hidden files included. Until it expires, listings and file metadata within it
+   * are answered without asking the server.
+   *
+   * @param path     folder to fetch, refreshed if already fetched
+   * @param maxDepth levels to fetch below it, negative for all
+   * @return {@code false} if the tree could not be fetched
+   */
+  public boolean prefetchTree( String path, int maxDepth ) {
+    return fetchTree( buildPath( path ), maxDepth, true ) != null;
+  }
+
+  private TreeSnapshot<RepositoryFileDto> fetchTree( String fullPath, int maxDepth,
+    boolean showHiddenFilesAndFolders ) {
     String requestURL = createRequestURL( fullPath, "tree" );
 
     WebResource resource = client.resource( requestURL );
@@ -127,9 +330,21 @@ public class RemoteReadAccess implements IReadAccess {
     */
 
     // GET
+    WebResource request = resource;
     RepositoryFileTreeDto response = null;
     try {
-      response = resource.type( MediaType.APPLICATION_XML ).get( RepositoryFileTreeDto.class );
+      response = callPolicy.read( () -> {
+        ClientResponse treeResponse = request.type( MediaType.APPLICATION_XML ).get( ClientResponse.class );
+        try {
+          if ( treeResponse.getStatus() == ClientResponse.Status.OK.getStatusCode() ) {
+            return treeResponse.getEntity( RepositoryFileTreeDto.class );
+          }
+          checkServerError( treeResponse.getStatus(), requestURL );
+          return null;
+        } finally {
+          treeResponse.close();
+        }
+      }, CONTENT_TIMEOUT );
     } catch ( Exception ex ) {
       logger.error( ex );
       return null;
@@ -138,7 +353,10 @@ public class RemoteReadAccess implements IReadAccess {
       return null;
     }
 
-    return treeFlatten( response, includeDirs, filter, fullPath );
+    TreeSnapshot<RepositoryFileDto> tree = new TreeSnapshot<>( fullPath, maxDepth, showHiddenFilesAndFolders );
+    treeIndex( response, tree );
+    treeCache.put( tree );
+    return tree;
   }
 
   @Override
@@ -158,14 +376,128 @@ public class RemoteReadAccess implements IReadAccess {
 
   @Override
   public IBasicFile fetchFile( String path ) {
-    String fullPath = buildPath( path );
-    String requestURL = createRequestURL( fullPath, "properties" );
-    RepositoryFileDto response = client.resource( requestURL )
-      .type( MediaType.APPLICATION_XML )
-      .get( RepositoryFileDto.class );
+    RepositoryFileDto response = getProperties( buildPath( path ) );
+    if ( response == null ) {
+      return null;
+    }
     return new RemoteBasicFile( basePath, this, response );
   }
 
+  /**
+   * Gets the file properties from the metadata cache, asking the server only when the cached entry is missing or
+   * stale. Stale entries are revalidated with a conditional request if the server sent validators for them, and used
+   * as they are if the server can't be reached. Files the server recently reported missing are not asked for again
+   * until that expires.
+   *
+   * @param fullPath repository path
+   * @return file properties, or {@code null} if the file does not exist
+   */
+  protected RepositoryFileDto getProperties( String fullPath ) {
+    MetadataCache.Entry<RepositoryFileDto> cached = metadataCache.get( fullPath );
+    if ( cached != null && metadataCache.isFresh( cached ) ) {
+      return cached.getValue();
+    }
+    TreeSnapshot<RepositoryFileDto> tree = treeCache.getCovering( fullPath );
+    if ( tree != null ) {
+      return tree.get( fullPath );
+    }
+    if ( missingPaths.isMissing( fullPath ) ) {
+      return null;
+    }
+
+    try {
+      return propertyFlights.run( fullPath,
+        () -> callPolicy.read( () -> fetchProperties( fullPath, cached ), METADATA_TIMEOUT ) );
+    } catch ( IOException | RuntimeException ex ) {
+      if ( cached != null ) {
+        logger.debug( "Using stale properties of " + fullPath + ": " + ex.getMessage() );
+        return cached.getValue();
+      }
+      logger.error( "Failed to get properties of " + fullPath + ": " + ex.getMessage() );
+      return null;
+    }
+  }
+
+  private RepositoryFileDto fetchProperties( String fullPath, MetadataCache.Entry<RepositoryFileDto> cached )
+    throws IOException {
+    String requestURL = createRequestURL( fullPath, "properties" );
+    WebResource.Builder request = client.resource( requestURL )
+      .type( MediaType.APPLICATION_XML );
+    if ( cached != null && cached.canRevalidate() ) {
+      if ( cached.getETag() != null ) {
+        request = request.header( HttpHeaders.IF_NONE_MATCH, cached.getETag() );
+      }
+      if ( cached.getLastModified() != null ) {
+        request = request.header( HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified() );
+      }
+    }
+
+    ClientResponse response = request.get( ClientResponse.class );
+    try {
+      checkServerError( response.getStatus(), requestURL );
+      if ( cached != null && response.getStatus() == ClientResponse.Status.NOT_MODIFIED.getStatusCode() ) {
+        metadataCache.revalidated( cached );
+        return cached.getValue();
+      }
+      if ( response.getStatus() != ClientResponse.Status.OK.getStatusCode() ) {
+        metadataCache.invalidate( fullPath );
+        if ( response.getStatus() == ClientResponse.Status.NOT_FOUND.getStatusCode() ) {
+          missingPaths.add( fullPath );
+        }
+        return null;
+      }
+      RepositoryFileDto properties = response.getEntity( RepositoryFileDto.class );
+      metadataCache.put( fullPath, properties, response.getHeaders().getFirst( HttpHeaders.ETAG ),
+        response.getHeaders().getFirst( HttpHeaders.LAST_MODIFIED ) );
+      return properties;
+    } finally {
+      response.close();
+    }
+  }
+
+  /**
+   * Closes the response without reading it, so the connection can be kept alive for other requests.
+   *
+   * @return the response status
+   */
+  static int closeResponse( ClientResponse response ) {
+    try {
+      return response.getStatus();
+    } finally {
+      response.close();
+    }
+  }
+
+  /**
+   * Makes a request that changes the repository, it isn't retried.
+   *
+   * @return the response status, {@code -1} if the request failed
+   */
+  int write( Callable<ClientResponse> request ) {
+    try {
+      return callPolicy.write( () -> checkServerError( closeResponse( request.call() ), "write" ) );
+    } catch ( IOException | RuntimeException ex ) {
+      logger.error( "Remote write failed: " + ex.getMessage() );
+      return -1;
+    }
+  }
+
+  /**
+   * Server errors count as failures for the call policy, unlike client errors such as a missing file.
+   *
+   * @return the status, if not a server error
+   */
+  static int checkServerError( int status, String request ) throws IOException {
+    if ( status >= 500 ) {
+      throw new IOException( "Server error " + status + " on " + request );
+    }
+    return status;
+  }
+
+  public RemoteCallPolicy getCallPolicy() {
+    return callPolicy;
+  }
+
   static String encodePath( String path ) {
     return path.replaceAll( RepositoryFile.SEPARATOR, ":" );
   }
@@ -191,24 +523,123 @@ public class RemoteReadAccess implements IReadAccess {
     return path1.equals( path2 );
   }
 
-  private void treeFlattenRecursive( RepositoryFileTreeDto node, boolean includeDirs, IBasicFileFilter filter, List<IBasicFile> result, String queryPath ) {
-    IBasicFile file = new RemoteBasicFile( basePath, this, node.getFile() );
-
-    if ( ( includeDirs || !file.isDirectory() ) && !pathEquals( file.getFullPath(), queryPath ) && ( filter == null || filter.accept( file ) ) ) {
-      result.add( file );
-    }
+  private void treeIndex( RepositoryFileTreeDto node, TreeSnapshot<RepositoryFileDto> tree ) {
+    tree.add( node.getFile().getPath(), node.getFile() );
 
     for ( RepositoryFileTreeDto child : node.getChildren() ) {
-      treeFlattenRecursive( child, includeDirs, filter, result, queryPath );
+      treeIndex( child, tree );
     }
   }
 
-  List<IBasicFile> treeFlatten( RepositoryFileTreeDto tree, boolean includeDirs, IBasicFileFilter filter, String queryPath ) {
+  List<IBasicFile> treeFlatten( TreeSnapshot<RepositoryFileDto> tree, int maxDepth, boolean includeDirs,
+    boolean showHidden, IBasicFileFilter filter, String queryPath ) {
     List<IBasicFile> flatList = new ArrayList<>();
-    treeFlattenRecursive( tree, includeDirs, filter, flatList, queryPath );
+    // a tree fetched with hidden files may be used when they were not asked for
+    String hiddenFolder = null;
+    for ( RepositoryFileDto dto : tree.list( queryPath, maxDepth ) ) {
+      if ( pathEquals( dto.getPath(), queryPath ) ) {
+        continue;
+      }
+      if ( !showHidden ) {
+        if ( hiddenFolder != null && dto.getPath().startsWith( hiddenFolder ) ) {
+          continue;
+        }
+        if ( dto.isHidden() ) {
+          hiddenFolder = dto.isFolder() ? dto.getPath() + RepositoryFile.SEPARATOR : hiddenFolder;
+          continue;
+        }
+      }
+      IBasicFile file = new RemoteBasicFile( basePath, this, dto );
+      if ( ( includeDirs || !file.isDirectory() ) && ( filter == null || filter.accept( file ) ) ) {
+        flatList.add( file );
+      }
+    }
     return flatList;
   }
 
+  /**
+   * Drops anything cached for the path, to be called after changing it.
+   */
+  protected void invalidate( String fullPath ) {
+    metadataCache.invalidate( fullPath );
+    missingPaths.invalidate( fullPath );
+    treeCache.invalidate( fullPath );
+    if ( contentMirror != null ) {
+      contentMirror.invalidate( fullPath );
+    }
+    for ( MetadataCache<Boolean> access : accessCache.values() ) {
+      access.invalidate( fullPath );
+    }
+  }
+
+  /**
+   * Drops anything cached for the path and what is under it, to be called after deleting it.
+   */
+  protected void invalidateTree( String fullPath ) {
+    metadataCache.invalidateTree( fullPath );
+    missingPaths.invalidate( fullPath );
+    treeCache.invalidate( fullPath );
+    if ( contentMirror != null ) {
+      contentMirror.invalidateTree( fullPath );
+    }
+    for ( MetadataCache<Boolean> access : accessCache.values() ) {
+      access.invalidateTree( fullPath );
+    }
+  }
+
+  /**
+   * @return the content mirror for the server, <code>null</code> if disabled or unavailable
+   */
+  private static ContentMirror getContentMirror( String reposURL ) {
+    if ( CONTENT_MIRROR_SIZE <= 0 ) {
+      return null;
+    }
+    return contentMirrors.computeIfAbsent( reposURL, url -> {
+      try {
+        File dir = new File( CONTENT_MIRROR_DIR, Util.getMd5Digest( url ) );
+        return new ContentMirror( dir, CONTENT_MIRROR_SIZE );
+      } catch ( IOException ex ) {
+        logger.warn( "Unable to create content mirror for " + url + ", contents will always be downloaded", ex );
+        return null;
+      }
+    } );
+  }
+
+  private static Connection getConnection( String reposURL, String username, String password ) {
+    String authorization = RemoteTransport.basicAuthorization( username, password );
+    String key = reposURL + "|" + username;
+    if ( connections.size() >= MAX_SHARED && !connections.containsKey( key ) ) {
+      for ( Map.Entry<String, Connection> entry : connections.entrySet() ) {
+        if ( connections.remove( entry.getKey(), entry.getValue() ) ) {
+          entry.getValue().retire();
+        }
+      }
+    }
+    return connections.compute( key, ( k, connection ) -> {
+      if ( connection != null && connection.transport.getAuthorization().equals( authorization ) ) {
+        connection.acquire();
+        return connection;
+      }
+      if ( connection != null ) {
+        // the password changed, accesses already made with the old one keep using it
+        connection.retire();
+      }
+      Connection created = new Connection( username, password );
+      created.acquire();
+      return created;
+    } );
+  }
+
+  /**
+   * @return the state shared under the key, made if there is none; all of it is dropped once there is too much
+   */
+  private static <V> V getShared( ConcurrentMap<String, V> shared, String key, Function<String, V> create ) {
+    if ( shared.size() >= MAX_SHARED && !shared.containsKey( key ) ) {
+      shared.clear();
+    }
+    return shared.computeIfAbsent( key, create );
+  }
+
   protected String buildPath( String path ) {
     if ( path == null ) {
       return this.basePath;
@@ -223,4 +654,65 @@ public class RemoteReadAccess implements IReadAccess {
 
     return fullPath; //TODO: normalize and guard against accessing above basePath
   }
+
+  private static class Connection {
+    final RemoteTransport transport;
+    final Client client;
+    // accesses using it, and whether it was replaced by another
+    private int users;
+    private boolean retired;
+
+    Connection( String username, String password ) {
+      transport = new RemoteTransport( username, password, CLIENT_CONNECTIONS );
+      ClientConfig clientConfig = new DefaultClientConfig();
+      clientConfig.getFeatures().put( JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE );
+      client = Client.create( clientConfig );
+      client.setConnectTimeout( CONNECT_TIMEOUT );
+      client.setReadTimeout( READ_TIMEOUT );
+      // request bodies, uploads included, are sent as they are written instead of buffered to find out the length
+      client.setChunkedEncodingSize( CHUNK_SIZE );
+      // encodes the credentials once
+      client.addFilter( new HTTPBasicAuthFilter( username, password ) );
+    }
+
+    synchronized void acquire() {
+      users++;
+    }
+
+    synchronized void release() {
+      users--;
+      closeIfUnused();
+    }
+
+    /**
+     * No more accesses will use it, it is closed as soon as those using it are done.
+     */
+    synchronized void retire() {
+      retired = true;
+      closeIfUnused();
+    }
+
+    private void closeIfUnused() {
+      if ( retired && users == 0 ) {
+        client.destroy();
+        transport.shutdown();
+      }
+    }
+  }
+
+  private static class Caches {
+    final MetadataCache<RepositoryFileDto> metadata = new MetadataCache<>( METADATA_CACHE_SIZE, METADATA_CACHE_TTL );
+    final TreeSnapshotCache<RepositoryFileDto> trees = new TreeSnapshotCache<>( TREE_CACHE_SIZE, METADATA_CACHE_TTL );
+    final Map<FileAccess, MetadataCache<Boolean>> access = new EnumMap<>( FileAccess.class );
+    final MissingPathCache missing = new MissingPathCache( METADATA_CACHE_SIZE, MISSING_CACHE_TTL );
+    // requests in flight, joined by concurrent callers instead of repeated
+    final SingleFlight<String, RepositoryFileDto> propertyFlights = new SingleFlight<>();
+    final SingleFlight<String, Boolean> downloadFlights = new SingleFlight<>();
+
+    Caches() {
+      for ( FileAccess fileAccess : FileAccess.values() ) {
+        access.put( fileAccess, new MetadataCache<>( METADATA_CACHE_SIZE, ACCESS_CACHE_TTL ) );
+      }
+    }
+  }
 }
@@ -47,6 +47,13 @@ public class RemoteReadWriteAccess extends RemoteReadAccess implements IRWAccess
 
   @Override
   public boolean saveFile( String path, InputStream contents ) {
+    return saveFile( path, contents, false );
+  }
+
+  /**
+   * Uploads the file, streaming the contents, and sets whether it is hidden.
+   */
+  protected boolean saveFile( String path, InputStream contents, boolean hidden ) {
     String fullPath = buildPath( path );
     // split into folder and filename
     int splitIndex = fullPath.lastIndexOf( '/' );
@@ -66,17 +73,18 @@ public class RemoteReadWriteAccess extends RemoteReadAccess implements IRWAccess
     parts.field( "overwriteFile", "true" );
     parts.field( "fileNameOverride", filename );
 
-    ClientResponse response = client.resource( requestURL )
+    int status = write( () -> client.resource( requestURL )
       .type( MediaType.MULTIPART_FORM_DATA )
-      .post( ClientResponse.class, parts );
+      .post( ClientResponse.class, parts ) );
+    invalidate( fullPath );
 
-    if ( response.getStatus() != ClientResponse.Status.OK.getStatusCode() ) {
+    if ( status != ClientResponse.Status.OK.getStatusCode() ) {
       //TODO: handle non-OK status codes? log? exception?
       return false;
     }
 
-    // make file not hidden
-    return putMetadataProperty( fullPath, METADATA_PERM_HIDDEN, "false" );
+    // imported files are hidden, the import endpoint has no parameter for it
+    return putMetadataProperty( fullPath, METADATA_PERM_HIDDEN, String.valueOf( hidden ) );
   }
 
   @Override
@@ -105,19 +113,17 @@ public class RemoteReadWriteAccess extends RemoteReadAccess implements IRWAccess
     }
 
     String requestURL = createRequestURL( "", "delete" ); // TODO: delete or deletepermanent
-    ClientResponse response = client.resource( requestURL )
+    int status = write( () -> client.resource( requestURL )
       .type( MediaType.APPLICATION_XML )
-      .put( ClientResponse.class, fileId );
+      .put( ClientResponse.class, fileId ) );
+    invalidateTree( fullPath );
 
     //TODO: handle non-OK status codes? log? exception?
-    return response.getStatus() == ClientResponse.Status.OK.getStatusCode();
+    return status == ClientResponse.Status.OK.getStatusCode();
   }
 
   private String remoteFileId( String path ) {
-    String requestURL = createRequestURL( path, "properties" );
-    RepositoryFileDto properties = client.resource( requestURL )
-      .type( MediaType.APPLICATION_XML )
-      .get( RepositoryFileDto.class );
+    RepositoryFileDto properties = getProperties( path );
 
     if ( properties == null ) {
       return null;
@@ -129,12 +135,13 @@ public class RemoteReadWriteAccess extends RemoteReadAccess implements IRWAccess
   public boolean createFolder( String path ) {
     String fullPath = buildPath( path );
     String requestURL = createRequestURL( "/api/repo/dirs/", fullPath, null );
-    ClientResponse response = client.resource( requestURL )
+    int status = write( () -> client.resource( requestURL )
       .type( MediaType.APPLICATION_XML )
-      .put( ClientResponse.class, fullPath );
+      .put( ClientResponse.class, fullPath ) );
+    invalidate( fullPath );
 
     //TODO: handle non-OK status codes? log? exception?
-    return response.getStatus() == ClientResponse.Status.OK.getStatusCode();
+    return status == ClientResponse.Status.OK.getStatusCode();
   }
 
   @Override
@@ -161,12 +168,14 @@ public class RemoteReadWriteAccess extends RemoteReadAccess implements IRWAccess
     metadata.add( metadataProperty );
 
     String requestURL = createRequestURL( fullPath, "metadata" );
-    ClientResponse response = client.resource( requestURL )
+    int status = write( () -> client.resource( requestURL )
       .type( MediaType.APPLICATION_XML )
-      .put( ClientResponse.class, new JAXBElement<>( new QName( "stringKeyStringValueDtoes" ), ArrayList.class, metadata ) );
+      .put( ClientResponse.class,
+        new JAXBElement<>( new QName( "stringKeyStringValueDtoes" ), ArrayList.class, metadata ) ) );
+    invalidate( fullPath );
 
     // TODO: handle non-OK status codes? log? exceptions?
-    if ( response.getStatus() == ClientResponse.Status.OK.getStatusCode() ) {
+    if ( status == ClientResponse.Status.OK.getStatusCode() ) {
       return true;
     }
     logger.error( "Failed to set " + key + "=" + value + " for: " + fullPath );
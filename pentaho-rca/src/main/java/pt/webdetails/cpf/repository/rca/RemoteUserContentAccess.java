@@ -21,12 +21,17 @@ import org.pentaho.platform.api.repository2.unified.webservices.StringKeyStringV
 import pt.webdetails.cpf.api.IFileContent;
 import pt.webdetails.cpf.api.IUserContentAccessExtended;
 import pt.webdetails.cpf.repository.api.FileAccess;
+import pt.webdetails.cpf.repository.remote.MetadataCache;
 
 import javax.ws.rs.core.MediaType;
 import javax.xml.bind.JAXBElement;
 import javax.xml.namespace.QName;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class RemoteUserContentAccess extends RemoteReadWriteAccess implements IUserContentAccessExtended {
   private static final Log logger = LogFactory.getLog( RemoteReadWriteAccess.class );
@@ -42,14 +47,8 @@ public class RemoteUserContentAccess extends RemoteReadWriteAccess implements IU
   @Override
   public boolean saveFile( IFileContent file ) {
     try {
-      if ( saveFile( file.getPath(), file.getContents() ) ) {
-        if ( file.isHidden() ) {
-          String path = file.getPath();
-          String fullPath = buildPath( path );
-          return putMetadataProperty( fullPath, METADATA_PERM_HIDDEN, "true" ) && updateProperties( file );
-        } else {
-          return updateProperties( file );
-        }
+      if ( saveFile( file.getPath(), file.getContents(), file.isHidden() ) ) {
+        return updateProperties( file );
       }
     } catch ( IOException ex ) {
       logger.error( ex );
@@ -67,32 +66,77 @@ public class RemoteUserContentAccess extends RemoteReadWriteAccess implements IU
     String fullPath = buildPath( path );
     String requestURL = createRequestURL( "/api/repo/files/", fullPath, "localeProperties" );
 
-    ClientResponse response = client.resource( requestURL )
+    int status = write( () -> client.resource( requestURL )
       .queryParam( "locale", defaultLocale )
       .type( MediaType.APPLICATION_XML )
-      .put( ClientResponse.class, new JAXBElement<>( new QName( "stringKeyStringValueDtoes" ), ArrayList.class, properties  ) );
+      .put( ClientResponse.class,
+        new JAXBElement<>( new QName( "stringKeyStringValueDtoes" ), ArrayList.class, properties ) ) );
+    invalidate( fullPath );
 
     //TODO: handle non-OK status codes? log? exception?
-    return response.getStatus() == ClientResponse.Status.OK.getStatusCode();
+    return status == ClientResponse.Status.OK.getStatusCode();
   }
 
   @Override
   public boolean hasAccess( String filePath, FileAccess access ) {
+    // keyed by full path, as invalidated on writes
+    Boolean cached = accessCache.get( access ).getFresh( buildPath( filePath ) );
+    return cached != null ? cached : fetchAccess( filePath, access );
+  }
+
+  /**
+   * Checks access to several files at once. There is no batch endpoint for arbitrary permissions, so the checks that
+   * aren't cached are made concurrently.
+   *
+   * @return if access is allowed, by path
+   */
+  public Map<String, Boolean> hasAccess( Collection<String> filePaths, FileAccess access ) {
+    MetadataCache<Boolean> cache = accessCache.get( access );
+    Map<String, Boolean> result = new LinkedHashMap<>();
+    List<String> missing = new ArrayList<>();
+    for ( String filePath : filePaths ) {
+      Boolean cached = cache.getFresh( buildPath( filePath ) );
+      if ( cached != null ) {
+        result.put( filePath, cached );
+      } else {
+        missing.add( filePath );
+      }
+    }
+    if ( !missing.isEmpty() ) {
+      result.putAll( fanOut( missing, filePath -> fetchAccess( filePath, access ) ) );
+    }
+    return result;
+  }
+
+  private boolean fetchAccess( String filePath, FileAccess access ) {
     String requestURL = createRequestURL( filePath, "canAccess" );
 
     String response = null;
     try {
-      response = client
-        .resource( requestURL )
-        .queryParam( "permissions", Integer.toString( encodeFileAccess( access ) ) )
-        .type( MediaType.TEXT_PLAIN )
-        .get( String.class );
+      response = callPolicy.read( () -> {
+        ClientResponse accessResponse = client
+          .resource( requestURL )
+          .queryParam( "permissions", Integer.toString( encodeFileAccess( access ) ) )
+          .type( MediaType.TEXT_PLAIN )
+          .get( ClientResponse.class );
+        try {
+          if ( accessResponse.getStatus() == ClientResponse.Status.OK.getStatusCode() ) {
+            return accessResponse.getEntity( String.class );
+          }
+          checkServerError( accessResponse.getStatus(), requestURL );
+          return null;
+        } finally {
+          accessResponse.close();
+        }
+      }, METADATA_TIMEOUT );
     } catch ( Exception ex ) {
       logger.error( ex );
       return false;
     }
 
-    return response != null && Boolean.parseBoolean( response );
+    boolean allowed = response != null && Boolean.parseBoolean( response );
+    accessCache.get( access ).put( buildPath( filePath ), allowed, null, null );
+    return allowed;
   }
 
   private int encodeFileAccess( FileAccess access ) {
@@ -0,0 +1,261 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.rca;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pt.webdetails.cpf.repository.api.FileAccess;
+import pt.webdetails.cpf.repository.api.IBasicFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Workloads run against {@link StubRepositoryServer}, checking how many requests reach the server. Wall times depend
+ * on the machine, they are only printed when run with <code>-Dcpf.workload.report=true</code>.<br>
+ * Client settings are left at their defaults, as they are read once per JVM by whichever test loads the remote
+ * accesses first.
+ */
+public class RemoteAccessWorkloadTest {
+
+  private static final int FOLDERS = 4;
+  private static final int FILES_PER_FOLDER = 10;
+  private static final long LATENCY = 2;
+  private static final int READERS = 8;
+  private static final boolean REPORT = Boolean.getBoolean( "cpf.workload.report" );
+
+  private StubRepositoryServer server;
+  private RemoteReadAccess reader;
+  private RemoteUserContentAccess writer;
+  private List<String> paths;
+
+  @Before
+  public void setUp() throws IOException {
+    server = new StubRepositoryServer();
+    paths = new ArrayList<>();
+    for ( int i = 0; i < FOLDERS; i++ ) {
+      for ( int j = 0; j < FILES_PER_FOLDER; j++ ) {
+        String path = "/public/folder" + i + "/file" + j + ".txt";
+        server.addFile( path, "contents of " + path );
+        paths.add( path );
+      }
+    }
+    server.setLatency( LATENCY );
+    server.start();
+
+    // a new port for each test, so nothing is shared with the previous one
+    reader = new RemoteReadAccess( server.getURL(), "admin", "password" );
+    writer = new RemoteUserContentAccess( server.getURL(), "admin", "password" );
+  }
+
+  @After
+  public void tearDown() {
+    server.stop();
+  }
+
+  @Test
+  public void testRepeatedReads() throws IOException {
+    long start = System.nanoTime();
+    for ( String path : paths ) {
+      assertEquals( "contents of " + path, read( reader.getFileInputStream( path ) ) );
+    }
+    report( "first read", start );
+    assertEquals( paths.size(), server.getRequestCount( StubRepositoryServer.DOWNLOAD ) );
+    assertEquals( paths.size(), server.getRequestCount( StubRepositoryServer.PROPERTIES ) );
+
+    server.resetRequestCounts();
+    start = System.nanoTime();
+    for ( String path : paths ) {
+      assertEquals( "contents of " + path, read( reader.getFileInputStream( path ) ) );
+    }
+    report( "repeated read", start );
+    assertEquals( 0, server.getRequestCount() );
+  }
+
+  @Test
+  public void testConcurrentReads() throws Exception {
+    final String path = paths.get( 0 );
+    ExecutorService executor = Executors.newFixedThreadPool( READERS );
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      long start = System.nanoTime();
+      for ( int i = 0; i < READERS; i++ ) {
+        results.add( executor.submit( new Callable<String>() {
+          @Override
+          public String call() throws IOException {
+            return read( reader.getFileInputStream( path ) );
+          }
+        } ) );
+      }
+      for ( Future<String> result : results ) {
+        assertEquals( "contents of " + path, result.get() );
+      }
+      report( "concurrent read", start );
+    } finally {
+      executor.shutdownNow();
+    }
+    // callers either joined the requests in flight or found their results cached
+    assertEquals( 1, server.getRequestCount( StubRepositoryServer.PROPERTIES ) );
+    assertEquals( 1, server.getRequestCount( StubRepositoryServer.DOWNLOAD ) );
+  }
+
+  @Test
+  public void testListingAnswersMetadata() {
+    long start = System.nanoTime();
+    List<IBasicFile> files = reader.listFiles( "/public", null, -1, false );
+    assertEquals( paths.size(), files.size() );
+    for ( IBasicFile file : files ) {
+      assertTrue( reader.fileExists( file.getFullPath() ) );
+      assertTrue( reader.getLastModified( file.getFullPath() ) > 0 );
+    }
+    report( "list and stat", start );
+    assertEquals( 1, server.getRequestCount( StubRepositoryServer.TREE ) );
+    assertEquals( 0, server.getRequestCount( StubRepositoryServer.PROPERTIES ) );
+  }
+
+  @Test
+  public void testBatchExists() {
+    List<String> batch = new ArrayList<>( paths );
+    batch.add( "/public/missing.txt" );
+    batch.addAll( paths.subList( 0, FILES_PER_FOLDER ) );
+
+    long start = System.nanoTime();
+    Map<String, Boolean> exists = reader.fileExists( batch );
+    report( "batch exists", start );
+    assertEquals( paths.size() + 1, exists.size() );
+    assertFalse( exists.get( "/public/missing.txt" ) );
+    assertEquals( paths.size() + 1, server.getRequestCount( StubRepositoryServer.PROPERTIES ) );
+
+    // known to be missing until it is created
+    server.resetRequestCounts();
+    assertFalse( reader.fileExists( "/public/missing.txt" ) );
+    assertEquals( 0, server.getRequestCount() );
+    assertTrue( writer.saveFile( "/public/missing.txt", stream( "found" ) ) );
+    assertTrue( reader.fileExists( "/public/missing.txt" ) );
+  }
+
+  @Test
+  public void testBatchAccess() {
+    server.deny( paths.get( 0 ) );
+    List<String> batch = new ArrayList<>( paths );
+    batch.addAll( paths );
+
+    long start = System.nanoTime();
+    Map<String, Boolean> access = writer.hasAccess( batch, FileAccess.READ );
+    report( "batch access", start );
+    assertEquals( paths.size(), access.size() );
+    assertFalse( access.get( paths.get( 0 ) ) );
+    assertTrue( access.get( paths.get( 1 ) ) );
+    assertEquals( paths.size(), server.getRequestCount( StubRepositoryServer.CAN_ACCESS ) );
+
+    server.resetRequestCounts();
+    writer.hasAccess( batch, FileAccess.READ );
+    assertEquals( 0, server.getRequestCount() );
+  }
+
+  @Test
+  public void testAccessInvalidatedUnderBasePath() {
+    RemoteUserContentAccess based = new RemoteUserContentAccess( "/public/", server.getURL(), "admin", "password" );
+    based.hasAccess( "folder0/new.txt", FileAccess.READ );
+    based.hasAccess( "folder0/new.txt", FileAccess.READ );
+    assertEquals( 1, server.getRequestCount( StubRepositoryServer.CAN_ACCESS ) );
+
+    // saving drops the cached answer
+    assertTrue( based.saveFile( "folder0/new.txt", stream( "new" ) ) );
+    based.hasAccess( "folder0/new.txt", FileAccess.READ );
+    assertEquals( 2, server.getRequestCount( StubRepositoryServer.CAN_ACCESS ) );
+  }
+
+  @Test
+  public void testPasswordChanged() throws IOException {
+    RemoteReadAccess changed = new RemoteReadAccess( server.getURL(), "admin", "changed" );
+    assertEquals( "contents of " + paths.get( 0 ), read( changed.getFileInputStream( paths.get( 0 ) ) ) );
+
+    // the replaced connection isn't closed while still in use
+    assertTrue( reader.fileExists( paths.get( 1 ) ) );
+    assertEquals( "contents of " + paths.get( 1 ), read( reader.getFileInputStream( paths.get( 1 ) ) ) );
+  }
+
+  @Test
+  public void testSaves() throws IOException {
+    long start = System.nanoTime();
+    for ( String path : paths ) {
+      assertTrue( writer.saveFile( path, stream( "updated " + path ) ) );
+    }
+    report( "save", start );
+    assertEquals( paths.size(), server.getRequestCount( StubRepositoryServer.IMPORT ) );
+    assertEquals( paths.size(), server.getRequestCount( StubRepositoryServer.METADATA ) );
+    assertEquals( "updated " + paths.get( 0 ), server.getContents( paths.get( 0 ) ) );
+
+    // nothing stale is served after saving
+    assertEquals( "updated " + paths.get( 0 ), read( writer.getFileInputStream( paths.get( 0 ) ) ) );
+
+    assertTrue( writer.saveFile( "/public/new/file.txt", stream( "new" ) ) );
+    assertTrue( server.exists( "/public/new" ) );
+    assertTrue( writer.fileExists( "/public/new/file.txt" ) );
+  }
+
+  @Test
+  public void testFailingServer() throws IOException {
+    reader.getFileInputStream( paths.get( 0 ) );
+    server.setFailureRate( 1 );
+
+    long start = System.nanoTime();
+    int checks = 0;
+    while ( !reader.getCallPolicy().isOpen() && checks < paths.size() - 2 ) {
+      reader.fileExists( paths.get( ++checks ) );
+    }
+    report( "failing server", start );
+    assertTrue( reader.getCallPolicy().isOpen() );
+
+    // fails fast without calling the server, cached metadata is still served
+    int requests = server.getRequestCount();
+    assertFalse( reader.fileExists( paths.get( paths.size() - 1 ) ) );
+    assertTrue( reader.fileExists( paths.get( 0 ) ) );
+    assertEquals( requests, server.getRequestCount() );
+  }
+
+  private void report( String workload, long start ) {
+    if ( REPORT ) {
+      System.out.println( workload + ": " + server.getRequestCount() + " requests, "
+        + ( System.nanoTime() - start ) / 1000000 + "ms, " + reader.getCallPolicy() );
+    }
+  }
+
+  private static InputStream stream( String contents ) {
+    return new ByteArrayInputStream( contents.getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  private static String read( InputStream in ) throws IOException {
+    try {
+      return IOUtils.toString( in, "UTF-8" );
+    } finally {
+      in.close();
+    }
+  }
+}
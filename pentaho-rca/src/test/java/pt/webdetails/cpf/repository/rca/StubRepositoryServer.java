@@ -0,0 +1,465 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package pt.webdetails.cpf.repository.rca;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileTreeDto;
+
+import javax.xml.bind.JAXB;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the repository REST API of a Pentaho Server, for the endpoints the remote accesses use under
+ * <code>/api/repo/files</code> and <code>/api/repo/dirs</code>. Files are kept in memory.<br>
+ * Every request can be slowed down by a fixed latency and made to fail with a 503 at a given rate. Requests are
+ * counted by endpoint method, e.g. <code>properties</code>, <code>tree</code> or <code>import</code>.
+ */
+public class StubRepositoryServer {
+
+  public static final String PROPERTIES = "properties";
+  public static final String TREE = "tree";
+  public static final String DOWNLOAD = "download";
+  public static final String CAN_ACCESS = "canAccess";
+  public static final String IMPORT = "import";
+  public static final String METADATA = "metadata";
+  public static final String LOCALE_PROPERTIES = "localeProperties";
+  public static final String DELETE = "delete";
+  public static final String DIRS = "dirs";
+
+  private static final String FILES_ENDPOINT = "/api/repo/files/";
+  private static final String DIRS_ENDPOINT = "/api/repo/dirs/";
+  private static final String SEPARATOR = "/";
+  private static final Pattern HIDDEN_METADATA =
+    Pattern.compile( "<key>_PERM_HIDDEN</key>\\s*<value>(true|false)</value>" );
+
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  // by path, sorted so that a folder is followed by its contents
+  private final Map<String, StubFile> files = new ConcurrentSkipListMap<>();
+  private final Set<String> denied = ConcurrentHashMap.newKeySet();
+  private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+  private final AtomicLong versions = new AtomicLong();
+  private final Random random = new Random( 42 );
+
+  private volatile long latencyMillis;
+  private volatile double failureRate;
+
+  public StubRepositoryServer() throws IOException {
+    server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 0 );
+    server.createContext( "/api/repo/", this::handle );
+    server.setExecutor( executor );
+    addFolder( SEPARATOR );
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  public void stop() {
+    server.stop( 0 );
+    executor.shutdownNow();
+  }
+
+  /**
+   * @return the server URL, as given to the remote accesses
+   */
+  public String getURL() {
+    return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+  }
+
+  /**
+   * Adds or replaces a file, along with any missing parent folders.
+   */
+  public void addFile( String path, String contents ) {
+    addParents( path );
+    StubFile file = new StubFile( path, false );
+    file.contents = contents.getBytes( StandardCharsets.UTF_8 );
+    files.put( path, file );
+  }
+
+  public void addFolder( String path ) {
+    addParents( path );
+    files.putIfAbsent( path, new StubFile( path, true ) );
+  }
+
+  /**
+   * Makes <code>canAccess</code> answer false for the path.
+   */
+  public void deny( String path ) {
+    denied.add( path );
+  }
+
+  public boolean exists( String path ) {
+    return files.containsKey( path );
+  }
+
+  public String getContents( String path ) {
+    StubFile file = files.get( path );
+    return file == null || file.contents == null ? null : new String( file.contents, StandardCharsets.UTF_8 );
+  }
+
+  public void setLatency( long millis ) {
+    this.latencyMillis = millis;
+  }
+
+  /**
+   * @param rate fraction of requests answered with 503, from 0 to 1
+   */
+  public void setFailureRate( double rate ) {
+    this.failureRate = rate;
+  }
+
+  /**
+   * @param method endpoint method, such as {@link #PROPERTIES}
+   */
+  public int getRequestCount( String method ) {
+    AtomicInteger count = requestCounts.get( method );
+    return count == null ? 0 : count.get();
+  }
+
+  public int getRequestCount() {
+    int total = 0;
+    for ( AtomicInteger count : requestCounts.values() ) {
+      total += count.get();
+    }
+    return total;
+  }
+
+  public void resetRequestCounts() {
+    requestCounts.clear();
+  }
+
+  private void handle( HttpExchange exchange ) throws IOException {
+    try {
+      String requestPath = exchange.getRequestURI().getPath();
+      String method;
+      String path;
+      if ( requestPath.startsWith( DIRS_ENDPOINT ) ) {
+        method = DIRS;
+        path = decodePath( requestPath.substring( DIRS_ENDPOINT.length() ) );
+      } else if ( requestPath.equals( FILES_ENDPOINT + IMPORT ) ) {
+        method = IMPORT;
+        path = null;
+      } else if ( requestPath.startsWith( FILES_ENDPOINT ) ) {
+        String rest = requestPath.substring( FILES_ENDPOINT.length() );
+        int split = rest.lastIndexOf( SEPARATOR );
+        method = rest.substring( split + 1 );
+        path = split > 0 ? decodePath( rest.substring( 0, split ) ) : null;
+      } else {
+        send( exchange, 404, null, null );
+        return;
+      }
+      requestCounts.computeIfAbsent( method, key -> new AtomicInteger() ).incrementAndGet();
+
+      if ( latencyMillis > 0 ) {
+        Thread.sleep( latencyMillis );
+      }
+      if ( shouldFail() ) {
+        send( exchange, 503, "text/plain", "Injected failure".getBytes( StandardCharsets.UTF_8 ) );
+        return;
+      }
+
+      byte[] body = IOUtils.toByteArray( exchange.getRequestBody() );
+      Map<String, String> query = parseQuery( exchange.getRequestURI().getRawQuery() );
+      switch ( method ) {
+        case PROPERTIES:
+          properties( exchange, path );
+          break;
+        case TREE:
+          tree( exchange, path, query );
+          break;
+        case DOWNLOAD:
+          download( exchange, path );
+          break;
+        case CAN_ACCESS:
+          boolean allowed = files.containsKey( path ) && !denied.contains( path );
+          send( exchange, 200, "text/plain", String.valueOf( allowed ).getBytes( StandardCharsets.UTF_8 ) );
+          break;
+        case IMPORT:
+          importFile( exchange, body );
+          break;
+        case METADATA:
+          metadata( exchange, path, body );
+          break;
+        case DELETE:
+          delete( new String( body, StandardCharsets.UTF_8 ) );
+          send( exchange, 200, null, null );
+          break;
+        case DIRS:
+          addFolder( path );
+          send( exchange, 200, null, null );
+          break;
+        case LOCALE_PROPERTIES:
+          send( exchange, files.containsKey( path ) ? 200 : 404, null, null );
+          break;
+        default:
+          send( exchange, 404, null, null );
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void properties( HttpExchange exchange, String path ) throws IOException {
+    StubFile file = files.get( path );
+    if ( file == null ) {
+      send( exchange, 404, null, null );
+      return;
+    }
+    String etag = "\"" + file.version + "\"";
+    if ( etag.equals( exchange.getRequestHeaders().getFirst( "If-None-Match" ) ) ) {
+      send( exchange, 304, null, null );
+      return;
+    }
+    exchange.getResponseHeaders().set( "ETag", etag );
+    send( exchange, 200, "application/xml", marshal( file.toDto() ) );
+  }
+
+  private void tree( HttpExchange exchange, String path, Map<String, String> query ) throws IOException {
+    StubFile root = files.get( path );
+    if ( root == null ) {
+      send( exchange, 404, null, null );
+      return;
+    }
+    int depth = query.containsKey( "depth" ) ? Integer.parseInt( query.get( "depth" ) ) : -1;
+    boolean showHidden = Boolean.parseBoolean( query.get( "showHidden" ) );
+    send( exchange, 200, "application/xml", marshal( toTree( root, depth, showHidden ) ) );
+  }
+
+  private RepositoryFileTreeDto toTree( StubFile folder, int depth, boolean showHidden ) {
+    RepositoryFileTreeDto tree = new RepositoryFileTreeDto();
+    tree.setFile( folder.toDto() );
+    if ( folder.folder && depth != 0 ) {
+      for ( StubFile child : files.values() ) {
+        if ( isChild( folder.path, child.path ) && ( showHidden || !child.hidden ) ) {
+          tree.getChildren().add( toTree( child, depth - 1, showHidden ) );
+        }
+      }
+    }
+    return tree;
+  }
+
+  private void download( HttpExchange exchange, String path ) throws IOException {
+    StubFile file = files.get( path );
+    if ( file == null || file.folder ) {
+      send( exchange, 404, null, null );
+      return;
+    }
+    send( exchange, 200, "application/octet-stream", file.contents );
+  }
+
+  private void importFile( HttpExchange exchange, byte[] body ) throws IOException {
+    String contentType = exchange.getRequestHeaders().getFirst( "Content-Type" );
+    int boundaryIndex = contentType == null ? -1 : contentType.indexOf( "boundary=" );
+    if ( boundaryIndex < 0 ) {
+      send( exchange, 400, null, null );
+      return;
+    }
+    Map<String, byte[]> fields = parseMultipart( body, contentType.substring( boundaryIndex + "boundary=".length() ) );
+    String folder = new String( fields.get( "importDir" ), StandardCharsets.UTF_8 );
+    String name = new String( fields.get( "fileNameOverride" ), StandardCharsets.UTF_8 );
+    String path = folder.endsWith( SEPARATOR ) ? folder + name : folder + SEPARATOR + name;
+
+    addParents( path );
+    StubFile file = new StubFile( path, false );
+    file.contents = fields.get( "fileUpload" );
+    StubFile previous = files.put( path, file );
+    file.hidden = previous != null && previous.hidden;
+    send( exchange, 200, null, null );
+  }
+
+  private void metadata( HttpExchange exchange, String path, byte[] body ) throws IOException {
+    StubFile file = files.get( path );
+    if ( file == null ) {
+      send( exchange, 404, null, null );
+      return;
+    }
+    Matcher hidden = HIDDEN_METADATA.matcher( new String( body, StandardCharsets.UTF_8 ) );
+    if ( hidden.find() ) {
+      file.hidden = Boolean.parseBoolean( hidden.group( 1 ) );
+      file.version = versions.incrementAndGet();
+    }
+    send( exchange, 200, null, null );
+  }
+
+  private void delete( String fileIds ) {
+    for ( String id : fileIds.split( "," ) ) {
+      for ( StubFile file : files.values() ) {
+        if ( file.id.equals( id.trim() ) ) {
+          String prefix = file.path + SEPARATOR;
+          files.keySet().removeIf( path -> path.equals( file.path ) || path.startsWith( prefix ) );
+        }
+      }
+    }
+  }
+
+  private void addParents( String path ) {
+    int split = path.lastIndexOf( SEPARATOR );
+    String parent = split > 0 ? path.substring( 0, split ) : SEPARATOR;
+    if ( !path.equals( SEPARATOR ) && !files.containsKey( parent ) ) {
+      addFolder( parent );
+    }
+  }
+
+  private boolean shouldFail() {
+    if ( failureRate <= 0 ) {
+      return false;
+    }
+    synchronized ( random ) {
+      return random.nextDouble() < failureRate;
+    }
+  }
+
+  private static boolean isChild( String folder, String path ) {
+    String prefix = folder.equals( SEPARATOR ) ? folder : folder + SEPARATOR;
+    return path.startsWith( prefix ) && path.length() > prefix.length()
+      && path.indexOf( SEPARATOR, prefix.length() ) < 0;
+  }
+
+  private static String decodePath( String encoded ) {
+    String path = encoded.replace( ':', '/' );
+    return path.isEmpty() ? SEPARATOR : path;
+  }
+
+  private static Map<String, String> parseQuery( String query ) throws UnsupportedEncodingException {
+    Map<String, String> params = new HashMap<>();
+    if ( query != null ) {
+      for ( String param : query.split( "&" ) ) {
+        int split = param.indexOf( '=' );
+        if ( split > 0 ) {
+          params.put( URLDecoder.decode( param.substring( 0, split ), "UTF-8" ),
+            URLDecoder.decode( param.substring( split + 1 ), "UTF-8" ) );
+        }
+      }
+    }
+    return params;
+  }
+
+  /**
+   * @return form field values by name
+   */
+  private static Map<String, byte[]> parseMultipart( byte[] body, String boundary ) {
+    Map<String, byte[]> fields = new HashMap<>();
+    byte[] delimiter = ( "--" + boundary ).getBytes( StandardCharsets.ISO_8859_1 );
+    byte[] headerEnd = "\r\n\r\n".getBytes( StandardCharsets.ISO_8859_1 );
+    int start = indexOf( body, delimiter, 0 );
+    while ( start >= 0 ) {
+      int partStart = start + delimiter.length;
+      int next = indexOf( body, delimiter, partStart );
+      if ( next < 0 ) {
+        break;
+      }
+      int contentStart = indexOf( body, headerEnd, partStart );
+      if ( contentStart >= 0 && contentStart < next ) {
+        String headers = new String( body, partStart, contentStart - partStart, StandardCharsets.ISO_8859_1 );
+        Matcher name = Pattern.compile( "name=\"([^\"]*)\"" ).matcher( headers );
+        if ( name.find() ) {
+          int from = contentStart + headerEnd.length;
+          // the part ends with a CRLF before the next delimiter
+          int to = Math.max( from, next - 2 );
+          byte[] value = new byte[ to - from ];
+          System.arraycopy( body, from, value, 0, value.length );
+          fields.put( name.group( 1 ), value );
+        }
+      }
+      start = next;
+    }
+    return fields;
+  }
+
+  private static int indexOf( byte[] data, byte[] pattern, int from ) {
+    for ( int i = from; i <= data.length - pattern.length; i++ ) {
+      int j = 0;
+      while ( j < pattern.length && data[ i + j ] == pattern[ j ] ) {
+        j++;
+      }
+      if ( j == pattern.length ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static byte[] marshal( Object dto ) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JAXB.marshal( dto, out );
+    return out.toByteArray();
+  }
+
+  private static void send( HttpExchange exchange, int status, String contentType, byte[] body ) throws IOException {
+    if ( contentType != null ) {
+      exchange.getResponseHeaders().set( "Content-Type", contentType );
+    }
+    if ( body == null || status == 304 ) {
+      exchange.sendResponseHeaders( status, -1 );
+      return;
+    }
+    exchange.sendResponseHeaders( status, body.length );
+    try ( OutputStream out = exchange.getResponseBody() ) {
+      out.write( body );
+    }
+  }
+
+  private class StubFile {
+    private final String path;
+    private final boolean folder;
+    private final String id;
+    private volatile boolean hidden;
+    private volatile byte[] contents;
+    private volatile long version;
+
+    private StubFile( String path, boolean folder ) {
+      this.path = path;
+      this.folder = folder;
+      this.id = "id-" + versions.incrementAndGet();
+      this.version = versions.incrementAndGet();
+    }
+
+    private RepositoryFileDto toDto() {
+      RepositoryFileDto dto = new RepositoryFileDto();
+      dto.setId( id );
+      dto.setPath( path );
+      dto.setName( path.equals( SEPARATOR ) ? "" : path.substring( path.lastIndexOf( SEPARATOR ) + 1 ) );
+      dto.setFolder( folder );
+      dto.setHidden( hidden );
+      dto.setFileSize( contents == null ? 0 : contents.length );
+      dto.setLastModifiedDate( String.valueOf( version ) );
+      return dto;
+    }
+  }
+}
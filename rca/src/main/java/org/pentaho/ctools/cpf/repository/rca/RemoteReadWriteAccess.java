@@ -34,6 +34,9 @@ import java.util.ArrayList;
  */
 public class RemoteReadWriteAccess extends RemoteReadAccess implements IRWAccess {
   private static final Log logger = LogFactory.getLog( RemoteReadWriteAccess.class );
+  // Jersey client property and value, the API has no constants for them
+  static final String REQUEST_ENTITY_PROCESSING = "jersey.config.client.request.entity.processing";
+  static final String CHUNKED = "CHUNKED";
 
   public RemoteReadWriteAccess( String reposURL, String username, String password ) {
     super( reposURL, username, password );
@@ -45,6 +48,13 @@ public class RemoteReadWriteAccess extends RemoteReadAccess implements IRWAccess
 
   @Override
   public boolean saveFile( String path, InputStream contents ) {
+    return saveFile( path, contents, false );
+  }
+
+  /**
+   * Uploads the file, streaming the contents, and sets whether it is hidden.
+   */
+  protected boolean saveFile( String path, InputStream contents, boolean hidden ) {
     String fullPath = buildPath( path );
     // split into folder and filename
     int splitIndex = fullPath.lastIndexOf( '/' );
@@ -58,36 +68,23 @@ public class RemoteReadWriteAccess extends RemoteReadAccess implements IRWAccess
     // this endpoint requires a different encoding for paths
     String requestURL = createRequestURL( "/api/repo/files/import", "", null );
 
-    Response response = client.target( requestURL )
+    int status = write( () -> client.target( requestURL )
         .request()
-        .post( Entity.entity( new ImportMessage( folder, filename, contents, true ), "multipart/form-data" ) );
+        // sent as it is read, instead of buffered to find out the length
+        .property( REQUEST_ENTITY_PROCESSING, CHUNKED )
+        .post( Entity.entity( new ImportMessage( folder, filename, contents, true ), "multipart/form-data" ) ) );
+    invalidate( fullPath );
 
-    if ( response.getStatus() != Response.Status.OK.getStatusCode() ) {
+    if ( status != Response.Status.OK.getStatusCode() ) {
       //TODO: handle non-OK status codes? log? exception?
       return false;
     }
 
-    // make file not hidden
-    StringKeyStringValueDto hiddenMeta = new StringKeyStringValueDto();
-    hiddenMeta.setKey( "_PERM_HIDDEN" );
-    hiddenMeta.setValue( "false" );
-
-    List<StringKeyStringValueDto> metadata = new ArrayList<>();
-    metadata.add( hiddenMeta );
-
-    requestURL = createRequestURL( fullPath, "metadata" );
-    GenericEntity<List<StringKeyStringValueDto>> entity = new GenericEntity<List<StringKeyStringValueDto>>( metadata )
-    {
-    };
-    response = client.target( requestURL )
-        .request( MediaType.APPLICATION_XML )
-        .put( Entity.xml( entity ) );
-
-    // TODO: handle non-OK status codes? log? exceptions?
-    if ( response.getStatus() == Response.Status.OK.getStatusCode() ) {
+    // imported files are hidden, the import endpoint has no parameter for it
+    if ( setHidden( fullPath, hidden ) ) {
       return true;
     }
-    logger.error( "Failed to set _PERM_HIDDEN=false for: " + fullPath );
+    logger.error( "Failed to set _PERM_HIDDEN=" + hidden + " for: " + fullPath );
     return false;
   }
 
@@ -117,24 +114,26 @@ public class RemoteReadWriteAccess extends RemoteReadAccess implements IRWAccess
     }
 
     String requestURL = createRequestURL( "", "delete" ); // TODO: delete or deletepermanent
-    Response response = client.target( requestURL )
+    int status = write( () -> client.target( requestURL )
         .request( MediaType.APPLICATION_XML )
-        .put( Entity.text( fileId ) );
+        .put( Entity.text( fileId ) ) );
+    invalidateTree( fullPath );
 
     //TODO: handle non-OK status codes? log? exception?
-    return response.getStatus() == Response.Status.OK.getStatusCode();
+    return status == Response.Status.OK.getStatusCode();
   }
 
   @Override
   public boolean createFolder( String path ) {
     String fullPath = buildPath( path );
     String requestURL = createRequestURL( "/api/repo/dirs/", fullPath, null );
-    Response response = client.target( requestURL )
+    int status = write( () -> client.target( requestURL )
         .request( MediaType.APPLICATION_XML )
-        .put( Entity.text( fullPath ) );
+        .put( Entity.text( fullPath ) ) );
+    invalidate( fullPath );
 
     //TODO: handle non-OK status codes? log? exception?
-    return response.getStatus() == Response.Status.OK.getStatusCode();
+    return status == Response.Status.OK.getStatusCode();
   }
 
   @Override
@@ -153,9 +152,13 @@ public class RemoteReadWriteAccess extends RemoteReadAccess implements IRWAccess
   }
 
   protected boolean makeHidden( String path ) {
+    return setHidden( path, true );
+  }
+
+  protected boolean setHidden( String path, boolean hidden ) {
     StringKeyStringValueDto hiddenMeta = new StringKeyStringValueDto();
     hiddenMeta.setKey( "_PERM_HIDDEN" );
-    hiddenMeta.setValue( "true" );
+    hiddenMeta.setValue( String.valueOf( hidden ) );
 
     List<StringKeyStringValueDto> metadata = new ArrayList<>();
     metadata.add( hiddenMeta );
@@ -164,19 +167,17 @@ public class RemoteReadWriteAccess extends RemoteReadAccess implements IRWAccess
     GenericEntity<List<StringKeyStringValueDto>> entity = new GenericEntity<List<StringKeyStringValueDto>>( metadata )
     {
     };
-    Response response = client.target( requestURL )
+    int status = write( () -> client.target( requestURL )
       .request( MediaType.APPLICATION_XML )
-      .put( Entity.xml( entity ) );
+      .put( Entity.xml( entity ) ) );
+    invalidate( path );
 
     // TODO: handle non-OK status codes? log? exceptions?
-    return response.getStatus() == Response.Status.OK.getStatusCode();
+    return status == Response.Status.OK.getStatusCode();
   }
 
   private String remoteFileId( String path ) {
-    String requestURL = createRequestURL( path, "properties" );
-    RepositoryFileDto properties = client.target( requestURL )
-        .request( MediaType.APPLICATION_XML )
-        .get( RepositoryFileDto.class );
+    RepositoryFileDto properties = getProperties( path );
 
     if ( properties == null ) {
       return null; //TODO: exception? log?
@@ -19,6 +19,7 @@ import org.pentaho.platform.api.repository2.unified.webservices.StringKeyStringV
 import pt.webdetails.cpf.api.IFileContent;
 import pt.webdetails.cpf.api.IUserContentAccessExtended;
 import pt.webdetails.cpf.repository.api.FileAccess;
+import pt.webdetails.cpf.repository.remote.MetadataCache;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.GenericEntity;
@@ -26,7 +27,10 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class {@code RemoteUserContentAccess} provides an implementation of {@code IUserContentAccessExtended} via REST calls to the Pentaho Server.
@@ -47,20 +51,63 @@ public class RemoteUserContentAccess extends RemoteReadWriteAccess implements IU
 
   @Override
   public boolean hasAccess( String filePath, FileAccess access ) {
+    // keyed by full path, as invalidated on writes
+    Boolean cached = accessCache.get( access ).getFresh( buildPath( filePath ) );
+    return cached != null ? cached : fetchAccess( filePath, access );
+  }
+
+  /**
+   * Checks access to several files at once. There is no batch endpoint for arbitrary permissions, so the checks that
+   * aren't cached are made concurrently.
+   *
+   * @return if access is allowed, by path
+   */
+  public Map<String, Boolean> hasAccess( Collection<String> filePaths, FileAccess access ) {
+    MetadataCache<Boolean> cache = accessCache.get( access );
+    Map<String, Boolean> result = new LinkedHashMap<>();
+    List<String> missing = new ArrayList<>();
+    for ( String filePath : filePaths ) {
+      Boolean cached = cache.getFresh( buildPath( filePath ) );
+      if ( cached != null ) {
+        result.put( filePath, cached );
+      } else {
+        missing.add( filePath );
+      }
+    }
+    if ( !missing.isEmpty() ) {
+      result.putAll( fanOut( missing, filePath -> fetchAccess( filePath, access ) ) );
+    }
+    return result;
+  }
+
+  private boolean fetchAccess( String filePath, FileAccess access ) {
     String requestURL = createRequestURL( filePath, "canAccess" );
 
     String response = null;
     try {
-      response = client
-        .target( requestURL )
-        .queryParam( "permissions", encodeFileAccess( access ) )
-        .request( MediaType.TEXT_PLAIN ).get( String.class );
+      response = callPolicy.read( () -> {
+        Response accessResponse = client
+          .target( requestURL )
+          .queryParam( "permissions", encodeFileAccess( access ) )
+          .request( MediaType.TEXT_PLAIN ).get();
+        try {
+          if ( accessResponse.getStatus() == Response.Status.OK.getStatusCode() ) {
+            return accessResponse.readEntity( String.class );
+          }
+          checkServerError( accessResponse.getStatus(), requestURL );
+          return null;
+        } finally {
+          accessResponse.close();
+        }
+      }, METADATA_TIMEOUT );
     } catch ( Exception ex ) {
       logger.error( ex );
       return false;
     }
 
-    return response != null && Boolean.parseBoolean( response );
+    boolean allowed = response != null && Boolean.parseBoolean( response );
+    accessCache.get( access ).put( buildPath( filePath ), allowed, null, null );
+    return allowed;
   }
 
   private int encodeFileAccess( FileAccess access ) {
@@ -88,14 +135,8 @@ public class RemoteUserContentAccess extends RemoteReadWriteAccess implements IU
   @Override
   public boolean saveFile( IFileContent file ) {
     try {
-      if ( saveFile( file.getPath(), file.getContents() ) ) {
-        if ( file.isHidden() ) {
-          String path = file.getPath();
-          String fullPath = buildPath( path );
-          return makeHidden( fullPath ) && updateProperties( file );
-        } else {
-          return updateProperties( file );
-        }
+      if ( saveFile( file.getPath(), file.getContents(), file.isHidden() ) ) {
+        return updateProperties( file );
       }
     } catch ( IOException ex ) {
       logger.error( ex );
@@ -115,12 +156,13 @@ public class RemoteUserContentAccess extends RemoteReadWriteAccess implements IU
     String path = file.getPath();
     String fullPath = buildPath( path );
     String requestURL = createRequestURL( "/api/repo/files/", fullPath, "localeProperties" );
-    Response response = client.target( requestURL )
+    int status = write( () -> client.target( requestURL )
       .queryParam( "locale", defaultLocale )
       .request( MediaType.APPLICATION_XML )
-      .put( Entity.xml( entity ) );
+      .put( Entity.xml( entity ) ) );
+    invalidate( fullPath );
 
     //TODO: handle non-OK status codes? log? exception?
-    return response.getStatus() == Response.Status.OK.getStatusCode();
+    return status == Response.Status.OK.getStatusCode();
   }
 }